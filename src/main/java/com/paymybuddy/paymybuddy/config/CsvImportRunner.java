@@ -0,0 +1,41 @@
+package com.paymybuddy.paymybuddy.config;
+
+import com.paymybuddy.paymybuddy.service.CsvImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Imports partner CSV files given on the command line once the app is started, such as
+ * --import-users=users.csv --import-connections=connections.csv --import-transactions=transactions.csv.
+ * Users are imported first, as connections and transactions refer to them by email.
+ */
+@Component
+@Slf4j
+public class CsvImportRunner implements ApplicationRunner {
+	private final CsvImportService csvImportService;
+
+	public CsvImportRunner(CsvImportService csvImportService) {
+		this.csvImportService = csvImportService;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		importFiles(args, "import-users", csvImportService :: importUsers);
+		importFiles(args, "import-connections", csvImportService :: importConnections);
+		importFiles(args, "import-transactions", csvImportService :: importTransactions);
+	}
+
+	private static void importFiles(ApplicationArguments args, String option,
+			Function<Path, CsvImportService.ImportReport> importer) {
+		List<String> files = args.getOptionValues(option);
+		if (files != null) {
+			files.forEach(file -> importer.apply(Path.of(file)));
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package com.paymybuddy.paymybuddy.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables scheduled jobs, such as balance snapshots.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
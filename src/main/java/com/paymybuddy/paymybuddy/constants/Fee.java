@@ -6,7 +6,11 @@ public class Fee {
 	 */
 	public static final int          SCALE                 = 2;
 	/**
-	 * Fee to be applied for each transaction.
+	 * Fee to be applied for each transaction, in basis points of the amount (0.5%).
 	 */
-	public static final double       TRANSACTION_FEE       = 0.005;
+	public static final long         TRANSACTION_FEE_BASIS_POINTS = 50;
+	/**
+	 * Number of basis points in a whole amount.
+	 */
+	public static final long         BASIS_POINTS          = 10_000;
 }
@@ -0,0 +1,24 @@
+package com.paymybuddy.paymybuddy.constants;
+
+/**
+ * Table holding the next ids of the entities whose ids are reserved by blocks, one row per entity.
+ * A table rather than a sequence, since MySQL has none, so that MySQL and H2 share the same schema.
+ */
+public class IdGenerator {
+	/**
+	 * Name of the table.
+	 */
+	public static final String TABLE           = "id_generator";
+	/**
+	 * Column holding the entity name.
+	 */
+	public static final String NAME_COLUMN     = "sequence_name";
+	/**
+	 * Column holding the upper id of the next block.
+	 */
+	public static final String VALUE_COLUMN    = "next_val";
+	/**
+	 * Number of ids reserved at once, matching hibernate.jdbc.batch_size.
+	 */
+	public static final int    ALLOCATION_SIZE = 50;
+}
@@ -9,4 +9,20 @@ public class Pagination {
 	 * Default requested page.
 	 */
 	public static final int DEFAULT_PAGE = 1;
+	/**
+	 * Maximum number of items a client can request at once.
+	 */
+	public static final int MAX_SIZE     = 100;
+	/**
+	 * Number of items per page of a streamed listing.
+	 */
+	public static final int DEFAULT_STREAMED_SIZE = 1_000;
+	/**
+	 * Maximum number of items a client can request in a streamed listing.
+	 */
+	public static final int MAX_STREAMED_SIZE     = 10_000;
+	/**
+	 * Number of rows fetched from the database at a time by streamed queries.
+	 */
+	public static final String FETCH_SIZE = "500";
 }
@@ -1,15 +1,16 @@
 package com.paymybuddy.paymybuddy.controller;
 
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.model.viewmodel.ConnectionViewModel;
 import com.paymybuddy.paymybuddy.service.ConnectionService;
+import com.paymybuddy.paymybuddy.service.NdjsonStreamingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -18,15 +19,26 @@ import java.util.Optional;
 public class ConnectionController {
     @Autowired
     ConnectionService connectionService;
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
 
     /**
-     * Lists all connections.
+     * Lists all connections page by page, in ascending id order, as one JSON object per line. Connections are
+     * written while they are read, and the next page starts after the id of the last connection received.
+     *
+     * @param after
+     *         id of the last connection of the previous page, 0 for the first page
+     * @param size
+     *         number of connections wanted, at most {@link Pagination#MAX_STREAMED_SIZE}
      *
-     * @return List of all connections.
+     * @return connections of the page, fewer than size for the last page.
      */
     @GetMapping
-    public List<ConnectionViewModel> getConnections() {
-        return connectionService.getConnections();
+    public ResponseEntity<StreamingResponseBody> getConnections(@RequestParam(defaultValue = "0") int after,
+            @RequestParam(defaultValue = "" + Pagination.DEFAULT_STREAMED_SIZE) int size) {
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType(NdjsonStreamingService.CONTENT_TYPE))
+                             .body(out -> ndjsonStreamingService.write(() -> connectionService.streamConnections(after, size), out));
     }
 
     /**
@@ -7,6 +7,8 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.concurrent.TimeoutException;
+
 /**
  * Exception thrown when a resource is not found.
  */
@@ -57,6 +59,20 @@ public class ExceptionHandlerController {
         return "Illegal argument value:\n" + emailAlreadyUsedException.getMessage();
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String illegalValueException(InvalidCursorException invalidCursorException) {
+        log.error("Illegal argument value.", invalidCursorException);
+        return "Illegal argument value:\n" + invalidCursorException.getMessage();
+    }
+
+    @ExceptionHandler(InvalidPaymentBatchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String illegalValueException(InvalidPaymentBatchException invalidPaymentBatchException) {
+        log.error("Illegal argument value.", invalidPaymentBatchException);
+        return "Illegal argument value:\n" + invalidPaymentBatchException.getMessage();
+    }
+
     @ExceptionHandler(NotAuthenticatedException.class)
     @ResponseStatus(HttpStatus.UNAUTHORIZED)
     public String notAuthenticatedException(NotAuthenticatedException notAuthenticatedException) {
@@ -64,6 +80,13 @@ public class ExceptionHandlerController {
         return "Unauthorized.\n" + notAuthenticatedException.getMessage();
     }
 
+    @ExceptionHandler(TimeoutException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String timeoutException(TimeoutException timeoutException) {
+        log.error("Payment not written in time.", timeoutException);
+        return "Payment still being processed, check your transactions before paying again.";
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public String returnMessage(Exception exception) {
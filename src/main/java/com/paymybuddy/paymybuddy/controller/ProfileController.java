@@ -1,13 +1,10 @@
 package com.paymybuddy.paymybuddy.controller;
 
 import com.paymybuddy.paymybuddy.constants.Pagination;
-import com.paymybuddy.paymybuddy.model.User;
-import com.paymybuddy.paymybuddy.service.ConnectionService;
-import com.paymybuddy.paymybuddy.service.TransactionService;
+import com.paymybuddy.paymybuddy.model.viewmodel.ProfilePageViewModel;
+import com.paymybuddy.paymybuddy.service.PageModelService;
 import com.paymybuddy.paymybuddy.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,31 +18,25 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class ProfileController {
 
     @Autowired
-    private UserService        userService;
+    private UserService      userService;
     @Autowired
-    private TransactionService transactionService;
-    @Autowired
-    private ConnectionService  connectionService;
+    private PageModelService pageModelService;
 
     @GetMapping
     public String showProfilePage(Model model,
                                   @RequestParam(value = "page", required = false) Integer page,
                                   @RequestParam(value = "size", required = false) Integer size) {
-        // Connected user
-        User connectedUser = userService.getAuthenticatedUser();
-
         // Connection pagination
         int currentPage = page == null ? Pagination.DEFAULT_PAGE : page;
         int pageSize    = size == null ? Pagination.DEFAULT_SIZE : size;
-        Page<?> pagedList =
-                connectionService.getPaginatedUserConnections(PageRequest.of(currentPage - 1, pageSize), connectedUser);
+        ProfilePageViewModel profilePage = pageModelService.getProfilePage(currentPage, pageSize);
 
-        model.addAttribute("pagedList", pagedList);
-        model.addAttribute("totalConnectionItems", pagedList.getTotalElements());
+        model.addAttribute("pagedList", profilePage.getConnections());
+        model.addAttribute("totalConnectionItems", profilePage.getConnections().getTotalElements());
 
 
-        model.addAttribute("user", connectedUser);
-        model.addAttribute("balance", connectedUser.getBalance());
+        model.addAttribute("user", profilePage.getUser());
+        model.addAttribute("balance", profilePage.getUser().getBalance());
         model.addAttribute("page", "profile");
 
         return "profile";
@@ -54,7 +45,7 @@ public class ProfileController {
     @GetMapping("/update-balance")
     public String showUpdateBalancePage(Model model) {
         model.addAttribute("page", "update-balance");
-        model.addAttribute("user", userService.getAuthenticatedUser());
+        model.addAttribute("user", UserService.userToViewModel(userService.getAuthenticatedUser()));
         return "update-balance";
     }
 
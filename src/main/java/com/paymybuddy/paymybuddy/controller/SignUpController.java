@@ -1,7 +1,7 @@
 package com.paymybuddy.paymybuddy.controller;
 
 import com.paymybuddy.paymybuddy.exceptions.EmailAlreadyUsedException;
-import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.SignUpViewModel;
 import com.paymybuddy.paymybuddy.service.ConnectionService;
 import com.paymybuddy.paymybuddy.service.TransactionService;
 import com.paymybuddy.paymybuddy.service.UserService;
@@ -26,14 +26,14 @@ public class SignUpController {
 
     @GetMapping
     public String showSignUpPage(Model model) {
-        model.addAttribute("user", new User());
+        model.addAttribute("user", new SignUpViewModel());
         return "signup";
     }
 
     @PostMapping
-    public String signUp(User user, Model model, RedirectAttributes redirAttrs) {
+    public String signUp(SignUpViewModel user, Model model, RedirectAttributes redirAttrs) {
         try {
-            userService.createUser(user);
+            userService.createUser(UserService.signUpToUser(user));
             redirAttrs.addFlashAttribute("created", "You can now take full advantage of PayMyBuddy!");
             return "redirect:/login";
         } catch (IllegalArgumentException | EmailAlreadyUsedException e) {
@@ -1,15 +1,16 @@
 package com.paymybuddy.paymybuddy.controller;
 
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel;
+import com.paymybuddy.paymybuddy.service.NdjsonStreamingService;
 import com.paymybuddy.paymybuddy.service.TransactionService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -18,14 +19,26 @@ import java.util.Optional;
 public class TransactionController {
     @Autowired
     TransactionService transactionService;
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
     /**
-     * Lists all transactions.
+     * Lists all transactions page by page, in ascending id order, as one JSON object per line. Transactions are
+     * written while they are read, and the next page starts after the id of the last transaction received.
+     *
+     * @param after
+     *         id of the last transaction of the previous page, 0 for the first page
+     * @param size
+     *         number of transactions wanted, at most {@link Pagination#MAX_STREAMED_SIZE}
      *
-     * @return List of all transactions.
+     * @return transactions of the page, fewer than size for the last page.
      */
     @GetMapping
-    public List<TransactionViewModel> getTransactions() {
-        return transactionService.getTransactions();
+    public ResponseEntity<StreamingResponseBody> getTransactions(@RequestParam(defaultValue = "0") int after,
+            @RequestParam(defaultValue = "" + Pagination.DEFAULT_STREAMED_SIZE) int size) {
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType(NdjsonStreamingService.CONTENT_TYPE))
+                             .body(out -> ndjsonStreamingService.write(() -> transactionService.streamTransactions(after, size), out));
     }
 
     /**
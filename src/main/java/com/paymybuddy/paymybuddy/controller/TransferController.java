@@ -4,14 +4,14 @@ import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.exceptions.AlreadyABuddyException;
 import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransferPageViewModel;
 import com.paymybuddy.paymybuddy.model.viewmodel.TransferViewModel;
-import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
 import com.paymybuddy.paymybuddy.service.ConnectionService;
-import com.paymybuddy.paymybuddy.service.TransactionService;
+import com.paymybuddy.paymybuddy.service.PageModelService;
+import com.paymybuddy.paymybuddy.service.PartitionedTransferExecutor;
 import com.paymybuddy.paymybuddy.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,40 +20,52 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Controller
 @RequestMapping("/transfer")
 public class TransferController {
+    /**
+     * Shown when a payment is not written in time, it may still be written afterwards.
+     */
+    static final String TRANSFER_TIMEOUT_MESSAGE = "Your payment is still being processed, "
+                                                   + "check your transactions before paying again.";
 
     @Autowired
-    private UserService        userService;
+    private UserService       userService;
     @Autowired
-    private TransactionService transactionService;
+    private ConnectionService connectionService;
     @Autowired
-    private ConnectionService  connectionService;
+    private PageModelService  pageModelService;
+    @Autowired
+    private PartitionedTransferExecutor transferExecutor;
+    @Value("${paymybuddy.transfer.timeout-seconds:30}")
+    private long                        transferTimeoutSeconds;
 
     @GetMapping
     public String showTransferPage(Model model,
                                    @RequestParam(value = "page", required = false) Integer page,
-                                   @RequestParam(value = "size", required = false) Integer size) {
-        // Connected user
-        User connectedUser = userService.getAuthenticatedUser();
-
+                                   @RequestParam(value = "size", required = false) Integer size,
+                                   @RequestParam(value = "cursor", required = false) String cursor) {
         // Transaction pagination
         int currentPage = page == null ? Pagination.DEFAULT_PAGE : page;
         int pageSize    = size == null ? Pagination.DEFAULT_SIZE : size;
+        TransferPageViewModel transferPage = pageModelService.getTransferPage(currentPage, pageSize, cursor);
 
-        Page<?> pagedList = transactionService.getPaginatedUserTransactions(
-                PageRequest.of(currentPage - 1, pageSize), connectedUser.getId());
-
-        model.addAttribute("pagedList", pagedList);
-        model.addAttribute("totalTransactionItems", pagedList.getTotalElements());
-
-        List<UserViewModel> userConnections = connectionService.getUserConnections(connectedUser);
+        model.addAttribute("transactions", transferPage.getTransactions());
+        if (cursor == null) {
+            model.addAttribute("pagedList", transferPage.getPagedList());
+            model.addAttribute("totalTransactionItems", transferPage.getPagedList().getTotalElements());
+        } else {
+            // Infinite scroll: older transactions were sought from the cursor, without counting them all
+            model.addAttribute("nextCursor", transferPage.getNextCursor());
+            model.addAttribute("pageSize", pageSize);
+        }
 
-        model.addAttribute("user", connectedUser);
-        model.addAttribute("connections", userConnections);
+        model.addAttribute("user", transferPage.getUser());
+        model.addAttribute("connections", transferPage.getConnections());
         model.addAttribute("page", "transfer");
         model.addAttribute("transferForm", new TransferViewModel());
 
@@ -92,25 +104,31 @@ public class TransferController {
             model.addAttribute("page", "pay");
             switch (action) {
                 case "pay" -> {
-                    if (userService.getUserByEmail(transferForm.getPayeeEmail()).isEmpty()) {
-                        throw new BuddyNotFoundException(
-                                "Buddy with email (" + transferForm.getPayeeEmail() + ") does not exist.");
-                    }
-                    transactionService.createTransaction(userService.getAuthenticatedUser(),
-                                                         userService.getUserByEmail(transferForm.getPayeeEmail()).get(),
-                                                         transferForm.getDescription(),
-                                                         transferForm.getAmount());
+                    User payee = userService.getUserByEmail(transferForm.getPayeeEmail()).orElseThrow(
+                            () -> new BuddyNotFoundException(
+                                    "Buddy with email (" + transferForm.getPayeeEmail() + ") does not exist."));
+                    transferExecutor.transfer(userService.getAuthenticatedUser().getId(),
+                                              payee.getId(),
+                                              transferForm.getDescription(),
+                                              transferForm.getAmount())
+                                    .get(transferTimeoutSeconds, TimeUnit.SECONDS);
                     redirAttrs.addFlashAttribute("success",
                                                  "You successfully transferred " + transferForm.getAmount() + "€ to " + transferForm.getPayeeEmail());
                 }
                 case "redirect" -> {
                     model.addAttribute("transferForm", transferForm);
-                    model.addAttribute("amountWithFee",
-                                       transactionService.calculateAmountWithFee(transferForm.getAmount()).get("amountWithFee")
-                                                         .toString());
+                    model.addAttribute("amountWithFee", transferForm.getAmount().withFee().toString());
                     return "pay";
                 }
             }
+        } catch (ExecutionException e) {
+            // payment refused on the transfer lane
+            redirAttrs.addFlashAttribute("error", e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            redirAttrs.addFlashAttribute("error", TRANSFER_TIMEOUT_MESSAGE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            redirAttrs.addFlashAttribute("error", TRANSFER_TIMEOUT_MESSAGE);
         } catch (Exception e) {
             redirAttrs.addFlashAttribute("error", e.getMessage());
         }
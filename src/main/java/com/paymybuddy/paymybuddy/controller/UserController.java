@@ -1,20 +1,36 @@
 package com.paymybuddy.paymybuddy.controller;
 
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
+import com.paymybuddy.paymybuddy.model.Money;
 import com.paymybuddy.paymybuddy.model.User;
 import com.paymybuddy.paymybuddy.model.viewmodel.ConnectionViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.PaymentViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.SignUpViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionPageViewModel;
 import com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel;
 import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
 import com.paymybuddy.paymybuddy.service.ConnectionService;
+import com.paymybuddy.paymybuddy.service.NdjsonStreamingService;
+import com.paymybuddy.paymybuddy.service.PartitionedTransferExecutor;
+import com.paymybuddy.paymybuddy.service.TransactionExportService;
 import com.paymybuddy.paymybuddy.service.TransactionService;
 import com.paymybuddy.paymybuddy.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -28,28 +44,45 @@ public class UserController {
     private ConnectionService  connectionService;
     @Autowired
     private TransactionService transactionService;
+    @Autowired
+    private PartitionedTransferExecutor transferExecutor;
+    @Value("${paymybuddy.transfer.timeout-seconds:30}")
+    private long                        transferTimeoutSeconds;
+    @Autowired
+    private TransactionExportService transactionExportService;
+    @Autowired
+    private NdjsonStreamingService   ndjsonStreamingService;
 
     /**
      * Add new user.
      *
-     * @param user user with firstname, lastname, email and password.
+     * @param signUp user with firstname, lastname, email and password.
      *
-     * @return User saved or exception if email already used
+     * @return User saved, without password, or exception if email already used
      */
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public User createUser(@RequestBody User user) {
-        return userService.createUser(user);
+    public UserViewModel createUser(@RequestBody SignUpViewModel signUp) {
+        return UserService.userToViewModel(userService.createUser(UserService.signUpToUser(signUp)));
     }
 
     /**
-     * Lists all users.
+     * Lists all users page by page, in ascending id order, as one JSON object per line. Users are
+     * written while they are read, and the next page starts after the id of the last user received.
+     *
+     * @param after
+     *         id of the last user of the previous page, 0 for the first page
+     * @param size
+     *         number of users wanted, at most {@link Pagination#MAX_STREAMED_SIZE}
      *
-     * @return List of all users.
+     * @return users of the page, fewer than size for the last page.
      */
     @GetMapping
-    public List<UserViewModel> getUsers() {
-        return userService.getUsers();
+    public ResponseEntity<StreamingResponseBody> getUsers(@RequestParam(defaultValue = "0") int after,
+            @RequestParam(defaultValue = "" + Pagination.DEFAULT_STREAMED_SIZE) int size) {
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType(NdjsonStreamingService.CONTENT_TYPE))
+                             .body(out -> ndjsonStreamingService.write(() -> userService.streamUsers(after, size), out));
     }
 
 
@@ -131,23 +164,44 @@ public class UserController {
      * @param amount
      *         amount of transaction
      *
-     * @return a transaction object
+     * @return a transaction object, once paid on the user's transfer lane
      */
     @PostMapping("/pay")
     @ResponseStatus(HttpStatus.CREATED)
-    public TransactionViewModel payABuddy(@RequestParam String email,
+    public CompletableFuture<TransactionViewModel> payABuddy(@RequestParam String email,
                                  @RequestParam String description,
-                                 @RequestParam double amount) {
-        if (userService.getUserByEmail(email).isEmpty()) {
+                                 @RequestParam Money amount) {
+        Optional<User> payee = userService.getUserByEmail(email);
+        if (payee.isEmpty()) {
             String errorMessage = "The buddy with " +
                                   "email (" + email + ") does not exist.";
             log.error(errorMessage);
             throw new BuddyNotFoundException(errorMessage);
         }
-        return TransactionService.transactionToViewModel(transactionService.createTransaction(userService.getAuthenticatedUser(),
-                                                    userService.getUserByEmail(email).get(),
-                                                    description,
-                                                    amount));
+        return transferExecutor.transfer(userService.getAuthenticatedUser().getId(),
+                                         payee.get().getId(),
+                                         description,
+                                         amount)
+                               .orTimeout(transferTimeoutSeconds, TimeUnit.SECONDS)
+                               .thenApply(TransactionService :: transactionToViewModel);
+    }
+
+    /**
+     * Pays several buddies at once, for example to split a bill. All payments are made, or none of them.
+     *
+     * @param payments
+     *         payee email, amount and description of each payment
+     *
+     * @return the transactions, in the order of the payments, once paid on the user's transfer lane
+     */
+    @PostMapping("/pay/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompletableFuture<List<TransactionViewModel>> payBuddies(@RequestBody List<PaymentViewModel> payments) {
+        return transferExecutor.transferBatch(userService.getAuthenticatedUser().getId(), payments)
+                               .orTimeout(transferTimeoutSeconds, TimeUnit.SECONDS)
+                               .thenApply(transactions -> transactions.stream()
+                                                                      .map(TransactionService :: transactionToViewModel)
+                                                                      .toList());
     }
 
     /**
@@ -163,6 +217,50 @@ public class UserController {
         return transactionService.getUserTransactions(id);
     }
 
+    /**
+     * Get user transactions page by page, most recent first.
+     *
+     * @param id
+     *         user for which the transactions are wanted
+     * @param size
+     *         number of transactions wanted
+     * @param cursor
+     *         cursor returned with the previous transactions, omitted for the most recent ones
+     *
+     * @return the transactions and the cursor to the following ones
+     */
+    @GetMapping(value = "/{id}/transactions", params = "size")
+    public TransactionPageViewModel getTransactions(@PathVariable Integer id,
+                                                    @RequestParam int size,
+                                                    @RequestParam(required = false) String cursor) {
+        return transactionService.getUserTransactionsBefore(id, cursor, size);
+    }
+
+    /**
+     * Exports all user transactions as a statement, most recent first. The statement is written while transactions
+     * are read, so that long histories are not held in memory.
+     *
+     * @param id
+     *         user for which the transactions are wanted
+     * @param format
+     *         CSV, or NDJSON for one JSON object per line
+     *
+     * @return the statement, as an attachment
+     */
+    @GetMapping("/{id}/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(@PathVariable Integer id,
+                                                                    @RequestParam(defaultValue = "CSV")
+                                                                    TransactionExportService.Format format) {
+        Integer userId = getUser(id).getId();
+        return ResponseEntity.ok()
+                             .contentType(MediaType.parseMediaType(format.getContentType()))
+                             .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                     .filename("transactions-" + userId + "." + format.getExtension())
+                                     .build()
+                                     .toString())
+                             .body(out -> transactionExportService.export(userId, format, out));
+    }
+
 
     /**
      * Useful function to get a User object thanks to an ID
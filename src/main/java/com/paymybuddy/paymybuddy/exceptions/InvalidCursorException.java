@@ -0,0 +1,16 @@
+package com.paymybuddy.paymybuddy.exceptions;
+
+/**
+ * Exception for when a pagination cursor is malformed.
+ */
+public class InvalidCursorException extends RuntimeException {
+
+	/**
+	 * Exception thrown when the provided cursor can not be decoded into a date and an id.
+	 *
+	 * @param message Exception message.
+	 */
+	public InvalidCursorException(String message) {
+		super(message);
+	}
+}
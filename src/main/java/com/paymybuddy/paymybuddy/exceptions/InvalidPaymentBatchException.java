@@ -0,0 +1,16 @@
+package com.paymybuddy.paymybuddy.exceptions;
+
+/**
+ * Exception for when a batch of payments can not be paid as a whole.
+ */
+public class InvalidPaymentBatchException extends RuntimeException {
+
+	/**
+	 * Exception thrown when a batch of payments is empty or too large.
+	 *
+	 * @param message Exception message.
+	 */
+	public InvalidPaymentBatchException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,44 @@
+package com.paymybuddy.paymybuddy.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A user's balance checkpointed at a ledger high-water mark: the balance is the sum of the user's entries dated
+ * before entriesBefore, so that later balances only need the entries dated from it.
+ */
+@Entity
+@Table(name = "balance_snapshot")
+@Immutable
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalanceSnapshot {
+	/**
+	 * Mark of a user without snapshot yet, all entries are dated from it.
+	 */
+	public static final LocalDateTime NO_SNAPSHOT = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "balance_snapshot_id")
+	private Integer id;
+
+	@Column(name = "user_id")
+	private Integer userId;
+
+	private BigDecimal balance;
+
+	@Column(name = "entries_before")
+	private LocalDateTime entriesBefore;
+
+	private LocalDateTime date;
+}
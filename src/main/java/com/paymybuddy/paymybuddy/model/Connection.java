@@ -1,5 +1,6 @@
 package com.paymybuddy.paymybuddy.model;
 
+import com.paymybuddy.paymybuddy.constants.IdGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -15,8 +16,14 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 public class Connection {
+	/**
+	 * Reserved by blocks, like transaction ids.
+	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "connection_id")
+	@TableGenerator(name = "connection_id", table = IdGenerator.TABLE, pkColumnName = IdGenerator.NAME_COLUMN,
+			valueColumnName = IdGenerator.VALUE_COLUMN, pkColumnValue = "connection",
+			allocationSize = IdGenerator.ALLOCATION_SIZE)
 	@Column(name = "connection_id")
 	private Integer id;
 
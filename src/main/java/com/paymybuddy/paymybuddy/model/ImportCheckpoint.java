@@ -0,0 +1,33 @@
+package com.paymybuddy.paymybuddy.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a CSV import: the lines up to lineNumber are imported, so a failed import resumes after it.
+ */
+@Entity
+@Table(name = "import_checkpoint")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportCheckpoint {
+	/**
+	 * Kind of import and a name derived from the file's path, size and modification date, such as
+	 * users:3f2c5e8a-1b7d-3c4e-9a6f-0d2b8c7e5a41.
+	 */
+	@Id
+	@Column(name = "import_name")
+	private String name;
+
+	@Column(name = "line_number")
+	private int lineNumber;
+
+	private LocalDateTime date;
+}
@@ -0,0 +1,28 @@
+package com.paymybuddy.paymybuddy.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Lease of a scheduled job: the application instance that set lockedUntil runs the job until then, the others skip
+ * it.
+ */
+@Entity
+@Table(name = "job_lock")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobLock {
+	@Id
+	@Column(name = "job_name")
+	private String name;
+
+	@Column(name = "locked_until")
+	private LocalDateTime lockedUntil;
+}
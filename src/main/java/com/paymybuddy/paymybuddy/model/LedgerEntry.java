@@ -0,0 +1,74 @@
+package com.paymybuddy.paymybuddy.model;
+
+import com.paymybuddy.paymybuddy.constants.IdGenerator;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One line of the double-entry ledger. Each money movement writes entries whose debits and credits balance,
+ * and entries are never updated nor deleted afterwards.
+ * <p>
+ * User and transaction are kept as plain ids, so that the ledger still holds the history of deleted users.
+ */
+@Entity
+@Table(name = "ledger_entry")
+@Immutable
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerEntry {
+	/**
+	 * Accounts entries are written to.
+	 */
+	public enum Account {
+		/**
+		 * A user's balance.
+		 */
+		USER,
+		/**
+		 * Fees earned by the platform on transactions.
+		 */
+		PLATFORM_FEES,
+		/**
+		 * Users' bank accounts, money deposited to or withdrawn from the platform.
+		 */
+		BANK
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "ledger_entry_id")
+	@TableGenerator(name = "ledger_entry_id", table = IdGenerator.TABLE, pkColumnName = IdGenerator.NAME_COLUMN,
+			valueColumnName = IdGenerator.VALUE_COLUMN, pkColumnValue = "ledger_entry",
+			allocationSize = IdGenerator.ALLOCATION_SIZE)
+	@Column(name = "ledger_entry_id")
+	private Integer id;
+
+	@Enumerated(EnumType.STRING)
+	private Account account;
+
+	/**
+	 * User the entry is about, the balance owner for USER entries.
+	 */
+	@Column(name = "user_id")
+	private Integer userId;
+
+	/**
+	 * Transaction the entry was written for, null for deposits and withdrawals.
+	 */
+	@Column(name = "transaction_id")
+	private Integer transactionId;
+
+	private BigDecimal debit;
+
+	private BigDecimal credit;
+
+	private LocalDateTime date;
+}
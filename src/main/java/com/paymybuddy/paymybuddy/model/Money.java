@@ -0,0 +1,152 @@
+package com.paymybuddy.paymybuddy.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.paymybuddy.paymybuddy.constants.Fee;
+import com.paymybuddy.paymybuddy.exceptions.InvalidAmountException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Immutable amount of money, held as a whole number of minor units (cents) of its currency.
+ * <p>
+ * Payment amounts are parsed once into Money, then validated and charged their fee with exact long arithmetic,
+ * without the BigDecimal instances a double amount used to go through. They are converted to BigDecimal only where
+ * written to entities and balance updates.
+ */
+public final class Money implements Comparable<Money> {
+	/**
+	 * Currency of every PayMyBuddy account.
+	 */
+	public static final Currency EUR  = Currency.getInstance("EUR");
+	public static final Money    ZERO = new Money(0, EUR);
+
+	private final long     minorUnits;
+	private final Currency currency;
+
+	private Money(long minorUnits, Currency currency) {
+		this.minorUnits = minorUnits;
+		this.currency   = currency;
+	}
+
+	/**
+	 * @param minorUnits amount in cents
+	 * @return the amount in euros.
+	 */
+	public static Money ofMinorUnits(long minorUnits) {
+		return new Money(minorUnits, EUR);
+	}
+
+	/**
+	 * @param amount amount in euros, rounded half up to the cent
+	 * @return the amount in euros.
+	 * @throws InvalidAmountException if the amount does not fit in a long number of cents.
+	 */
+	@JsonCreator
+	public static Money of(BigDecimal amount) {
+		try {
+			return ofMinorUnits(amount.setScale(Fee.SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+		} catch (ArithmeticException e) {
+			throw new InvalidAmountException("Amount " + amount + " is too large.");
+		}
+	}
+
+	/**
+	 * Parses an amount typed by a user, also used by Spring to convert request parameters and form fields.
+	 *
+	 * @param amount amount in euros, such as 12.5
+	 * @return the amount in euros.
+	 * @throws InvalidAmountException if the amount is not a number or is too large.
+	 */
+	public static Money valueOf(String amount) {
+		try {
+			return of(new BigDecimal(amount.trim()));
+		} catch (NumberFormatException e) {
+			throw new InvalidAmountException("Amount " + amount + " is not a number.");
+		}
+	}
+
+	public long getMinorUnits() {
+		return minorUnits;
+	}
+
+	public Currency getCurrency() {
+		return currency;
+	}
+
+	public boolean isPositive() {
+		return minorUnits > 0;
+	}
+
+	public boolean isNegative() {
+		return minorUnits < 0;
+	}
+
+	public Money plus(Money other) {
+		checkCurrency(other);
+		return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+	}
+
+	/**
+	 * @return the transaction fee charged on this amount, rounded half up to the cent.
+	 */
+	public Money fee() {
+		return new Money(feeOf(minorUnits), currency);
+	}
+
+	/**
+	 * @return this amount plus its transaction fee.
+	 */
+	public Money withFee() {
+		return new Money(Math.addExact(minorUnits, feeOf(minorUnits)), currency);
+	}
+
+	private static long feeOf(long minorUnits) {
+		long fee = (Math.multiplyExact(Math.abs(minorUnits), Fee.TRANSACTION_FEE_BASIS_POINTS) + Fee.BASIS_POINTS / 2)
+				/ Fee.BASIS_POINTS;
+		return minorUnits < 0 ? -fee : fee;
+	}
+
+	/**
+	 * @return the amount in euros, with 2 decimals.
+	 */
+	@JsonValue
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(minorUnits, Fee.SCALE);
+	}
+
+	private void checkCurrency(Money other) {
+		if (!currency.equals(other.currency)) {
+			throw new IllegalArgumentException("Can not add " + other.currency + " to " + currency + ".");
+		}
+	}
+
+	@Override
+	public int compareTo(Money other) {
+		checkCurrency(other);
+		return Long.compare(minorUnits, other.minorUnits);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		Money money = (Money) o;
+		return minorUnits == money.minorUnits && currency.equals(money.currency);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+	}
+
+	/**
+	 * @return the amount with 2 decimals and without currency, such as 12.50, as shown in forms.
+	 */
+	@Override
+	public String toString() {
+		return toBigDecimal().toPlainString();
+	}
+}
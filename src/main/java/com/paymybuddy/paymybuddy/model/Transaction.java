@@ -1,5 +1,6 @@
 package com.paymybuddy.paymybuddy.model;
 
+import com.paymybuddy.paymybuddy.constants.IdGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -16,8 +17,15 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 public class Transaction {
+	/**
+	 * Ids are reserved by blocks of {@link IdGenerator#ALLOCATION_SIZE} from the id_generator table, so that
+	 * inserts can be sent in JDBC batches.
+	 */
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "transaction_id")
+	@TableGenerator(name = "transaction_id", table = IdGenerator.TABLE, pkColumnName = IdGenerator.NAME_COLUMN,
+			valueColumnName = IdGenerator.VALUE_COLUMN, pkColumnValue = "transaction",
+			allocationSize = IdGenerator.ALLOCATION_SIZE)
 	@Column(name = "transaction_id")
 	private Integer id;
 
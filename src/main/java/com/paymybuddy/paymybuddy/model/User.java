@@ -1,10 +1,12 @@
 package com.paymybuddy.paymybuddy.model;
 
+import com.paymybuddy.paymybuddy.constants.IdGenerator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.OptimisticLock;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
@@ -19,8 +21,12 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 public class User {
+	// Reserved by blocks, so that imported users are inserted by JDBC batches
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "user_id")
+	@TableGenerator(name = "user_id", table = IdGenerator.TABLE, pkColumnName = IdGenerator.NAME_COLUMN,
+			valueColumnName = IdGenerator.VALUE_COLUMN, pkColumnValue = "user",
+			allocationSize = IdGenerator.ALLOCATION_SIZE)
 	@Column(name = "user_id")
 	private Integer id;
 
@@ -34,18 +40,36 @@ public class User {
 	@Column(name = "lastname")
 	private String lastName;
 
-	@Column(name = "balance")
+	// Only written on insert, balance changes are atomic updates from UserRepository
+	@Column(name = "balance", updatable = false)
 	private BigDecimal balance;
 
+	// Connections and transactions are owned by the other side and saved from there. These lists are not updated
+	// when one is created, so that payments never load them, and never change the user's version
 	@OneToMany(mappedBy = "initializer")
+	@OptimisticLock(excluded = true)
 	private List<Connection> initializedConnections = new ArrayList<>();
 
 	@OneToMany(mappedBy = "receiver")
+	@OptimisticLock(excluded = true)
 	private List<Connection> receivedConnections = new ArrayList<>();
 
 	@OneToMany(mappedBy = "issuer")
+	@OptimisticLock(excluded = true)
 	private List<Transaction> initiatedTransactions = new ArrayList<>();
 
 	@OneToMany(mappedBy = "payee")
+	@OptimisticLock(excluded = true)
 	private List<Transaction> receivedTransactions = new ArrayList<>();
+
+	// Incremented by every update of the user, including atomic balance updates
+	@Version
+	private int version;
+
+	public User(Integer id, String email, String password, String firstName, String lastName, BigDecimal balance,
+			List<Connection> initializedConnections, List<Connection> receivedConnections,
+			List<Transaction> initiatedTransactions, List<Transaction> receivedTransactions) {
+		this(id, email, password, firstName, lastName, balance, initializedConnections, receivedConnections,
+				initiatedTransactions, receivedTransactions, 0);
+	}
 }
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
@@ -18,6 +19,22 @@ public class ConnectionViewModel {
     private UserViewModel receiver;
     private LocalDateTime startingDate;
 
+    /**
+     * Builds a connection view model from flat columns, used by query constructor expressions.
+     */
+    public ConnectionViewModel(Integer id,
+                               Integer initializerId, String initializerEmail, String initializerFirstname,
+                               String initializerLastname, BigDecimal initializerBalance,
+                               Integer receiverId, String receiverEmail, String receiverFirstname,
+                               String receiverLastname, BigDecimal receiverBalance,
+                               LocalDateTime startingDate) {
+        this(id,
+             new UserViewModel(initializerId, initializerEmail, initializerFirstname, initializerLastname,
+                               initializerBalance),
+             new UserViewModel(receiverId, receiverEmail, receiverFirstname, receiverLastname, receiverBalance),
+             startingDate);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
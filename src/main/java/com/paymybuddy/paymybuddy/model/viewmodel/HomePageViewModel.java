@@ -0,0 +1,21 @@
+package com.paymybuddy.paymybuddy.model.viewmodel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Everything the home page shows, read before the page is rendered.
+ */
+@Getter
+@AllArgsConstructor
+public class HomePageViewModel {
+    private final UserViewModel        user;
+    /**
+     * Null if the user has no buddy yet.
+     */
+    private final ConnectionViewModel  mostRecentConnection;
+    /**
+     * Null if the user has no transaction yet.
+     */
+    private final TransactionViewModel mostRecentTransaction;
+}
@@ -0,0 +1,20 @@
+package com.paymybuddy.paymybuddy.model.viewmodel;
+
+import com.paymybuddy.paymybuddy.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One payment of a batch, such as a share of a bill paid to a buddy.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentViewModel {
+    private String payeeEmail;
+    private Money  amount;
+    private String description;
+}
@@ -0,0 +1,18 @@
+package com.paymybuddy.paymybuddy.model.viewmodel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+
+/**
+ * Everything the profile page shows, read before the page is rendered.
+ */
+@Getter
+@AllArgsConstructor
+public class ProfilePageViewModel {
+    private final UserViewModel user;
+    /**
+     * The requested page of the user's buddies.
+     */
+    private final Page<?>       connections;
+}
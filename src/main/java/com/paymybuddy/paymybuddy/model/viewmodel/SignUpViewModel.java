@@ -0,0 +1,20 @@
+package com.paymybuddy.paymybuddy.model.viewmodel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * What a new user fills in to sign up, from the signup form or as JSON.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SignUpViewModel {
+    private String email;
+    private String password;
+    private String firstName;
+    private String lastName;
+}
@@ -0,0 +1,38 @@
+package com.paymybuddy.paymybuddy.model.viewmodel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * One transaction of an exported statement: users are only named by their email, so that the statement does not
+ * disclose the other users' balances.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatementLineViewModel {
+    private Integer id;
+
+    /**
+     * Date written as in the CSV statement.
+     */
+    private String date;
+
+    private String issuer;
+    private String payee;
+
+    private BigDecimal amount;
+
+    private String description;
+
+    public static StatementLineViewModel of(TransactionViewModel transaction) {
+        return new StatementLineViewModel(transaction.getId(), transaction.getDate().toString(),
+                                          transaction.getIssuer().getEmail(), transaction.getPayee().getEmail(),
+                                          transaction.getAmount(), transaction.getDescription());
+    }
+}
@@ -0,0 +1,52 @@
+package com.paymybuddy.paymybuddy.model.viewmodel;
+
+import com.paymybuddy.paymybuddy.exceptions.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position of the last transaction sent to a client, used to seek the next transactions.
+ * <p>
+ * The cursor is encoded, not signed: a client can build any position, which only moves it within the transactions
+ * of the user named by the request path, as they are sought for that user whatever the cursor.
+ */
+@Getter
+@AllArgsConstructor
+public class TransactionCursor {
+    private static final String SEPARATOR = "|";
+
+    private LocalDateTime date;
+    private Integer       id;
+
+    /**
+     * Encodes the cursor as a URL-safe string.
+     *
+     * @return encoded cursor
+     */
+    public String encode() {
+        String raw = date + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a cursor previously created by {@link #encode()}.
+     *
+     * @param cursor encoded cursor
+     * @return decoded cursor
+     * @throws InvalidCursorException if the cursor is malformed
+     */
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String raw       = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int    separator = raw.lastIndexOf(SEPARATOR);
+            return new TransactionCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                                         Integer.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("The cursor provided is invalid.");
+        }
+    }
+}
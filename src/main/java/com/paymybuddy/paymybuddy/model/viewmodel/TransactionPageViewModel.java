@@ -0,0 +1,20 @@
+package com.paymybuddy.paymybuddy.model.viewmodel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPageViewModel {
+    private List<TransactionViewModel> transactions;
+    /**
+     * Cursor to send back to get the following transactions, null on the last page.
+     */
+    private String                     next;
+}
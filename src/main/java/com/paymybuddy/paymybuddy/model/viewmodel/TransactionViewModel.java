@@ -24,6 +24,21 @@ public class TransactionViewModel {
 
     private String description;
 
+    /**
+     * Builds a transaction view model from flat columns, used by query constructor expressions.
+     */
+    public TransactionViewModel(Integer id,
+                                Integer issuerId, String issuerEmail, String issuerFirstname, String issuerLastname,
+                                BigDecimal issuerBalance,
+                                Integer payeeId, String payeeEmail, String payeeFirstname, String payeeLastname,
+                                BigDecimal payeeBalance,
+                                LocalDateTime date, BigDecimal amount, String description) {
+        this(id,
+             new UserViewModel(issuerId, issuerEmail, issuerFirstname, issuerLastname, issuerBalance),
+             new UserViewModel(payeeId, payeeEmail, payeeFirstname, payeeLastname, payeeBalance),
+             date, amount, description);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,27 @@
+package com.paymybuddy.paymybuddy.model.viewmodel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+/**
+ * Everything the transfer page shows, read before the page is rendered.
+ * Transactions are either a numbered page, or the transactions following a cursor for infinite scroll.
+ */
+@Getter
+@AllArgsConstructor
+public class TransferPageViewModel {
+    private final UserViewModel              user;
+    private final List<UserViewModel>        connections;
+    private final List<TransactionViewModel> transactions;
+    /**
+     * Numbered page of transactions, null when transactions follow a cursor.
+     */
+    private final Page<?>                    pagedList;
+    /**
+     * Cursor to the following transactions, null on the last page or for a numbered page.
+     */
+    private final String                     nextCursor;
+}
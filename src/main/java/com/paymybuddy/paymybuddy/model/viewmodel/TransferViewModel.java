@@ -1,5 +1,6 @@
 package com.paymybuddy.paymybuddy.model.viewmodel;
 
+import com.paymybuddy.paymybuddy.model.Money;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -11,7 +12,7 @@ import lombok.Setter;
 @AllArgsConstructor
 public class TransferViewModel {
     String payeeEmail;
-    double amount;
-    double amountWithFee;
+    Money  amount;
+    Money  amountWithFee;
     String description;
 }
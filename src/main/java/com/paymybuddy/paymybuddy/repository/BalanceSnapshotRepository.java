@@ -0,0 +1,41 @@
+package com.paymybuddy.paymybuddy.repository;
+
+import com.paymybuddy.paymybuddy.model.BalanceSnapshot;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BalanceSnapshotRepository extends CrudRepository<BalanceSnapshot, Integer> {
+    /**
+     * Reads the most recent snapshot of a user.
+     *
+     * @param userId id of the user
+     * @return the snapshot with the latest mark, if the user has one
+     */
+    Optional<BalanceSnapshot> findFirstByUserIdOrderByEntriesBeforeDesc(Integer userId);
+
+    /**
+     * Reads the most recent snapshot of each user, in one statement.
+     *
+     * @param userIds ids of the users
+     * @return one snapshot per user having one
+     */
+    @Query("SELECT s FROM BalanceSnapshot s WHERE s.userId IN :userIds AND s.entriesBefore = "
+           + "(SELECT MAX(o.entriesBefore) FROM BalanceSnapshot o WHERE o.userId = s.userId)")
+    List<BalanceSnapshot> findLatestByUserIdIn(@Param("userIds") Collection<Integer> userIds);
+
+    /**
+     * Reads the mark before which all ledger entries are included in snapshots.
+     *
+     * @return the latest mark, null if no snapshot was taken yet
+     */
+    @Query("SELECT MAX(s.entriesBefore) FROM BalanceSnapshot s")
+    LocalDateTime findHighWaterMark();
+}
@@ -1,16 +1,122 @@
 package com.paymybuddy.paymybuddy.repository;
 
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.model.Connection;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.ConnectionViewModel;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ConnectionRepository extends CrudRepository<Connection, Integer> {
     List<Connection> findByInitializerOrReceiver(User initializer, User receiver);
 
     Optional<Connection> findById(Integer id);
+
+    List<Connection> findByInitializerIdInOrReceiverIdIn(Collection<Integer> initializerIds,
+                                                         Collection<Integer> receiverIds);
+
+    /**
+     * Finds the ids of a user's buddies, whichever side of the connection they are on, in connection order.
+     * Each side is looked up with its own index, then both are appended.
+     *
+     * @param userId id of the user, either initializer or receiver
+     * @return ids of the user's buddies
+     */
+    @Query(value = "SELECT b.buddy_id FROM ("
+                   + "SELECT connection_id, fk_receiver_id AS buddy_id FROM connection "
+                   + "WHERE fk_initializer_id = :userId "
+                   + "UNION ALL "
+                   + "SELECT connection_id, fk_initializer_id AS buddy_id FROM connection "
+                   + "WHERE fk_receiver_id = :userId AND fk_initializer_id <> :userId"
+                   + ") b ORDER BY b.connection_id",
+           nativeQuery = true)
+    List<Integer> findBuddyIdsByUserId(@Param("userId") Integer userId);
+
+    /**
+     * Finds one page of the ids of a user's buddies, whichever side of the connection they are on, in ascending id
+     * order. Each side is looked up with its own index, then both are appended.
+     *
+     * @param userId   id of the user, either initializer or receiver
+     * @param pageable requested page
+     * @return a page of buddy ids
+     */
+    @Query(value = "SELECT b.buddy_id FROM ("
+                   + "SELECT fk_receiver_id AS buddy_id FROM connection WHERE fk_initializer_id = :userId "
+                   + "UNION ALL "
+                   + "SELECT fk_initializer_id AS buddy_id FROM connection "
+                   + "WHERE fk_receiver_id = :userId AND fk_initializer_id <> :userId"
+                   + ") b ORDER BY b.buddy_id",
+           countQuery = "SELECT (SELECT count(*) FROM connection WHERE fk_initializer_id = :userId) "
+                        + "+ (SELECT count(*) FROM connection "
+                        + "WHERE fk_receiver_id = :userId AND fk_initializer_id <> :userId)",
+           nativeQuery = true)
+    Page<Integer> findPageBuddyIdsByUserId(@Param("userId") Integer userId, Pageable pageable);
+
+    /**
+     * Checks whether two users are connected, whoever initialized the connection.
+     * Each side of the condition is an (initializer, receiver) index seek, and a pair is connected at most once.
+     *
+     * @param userAId id of a user
+     * @param userBId id of the other user
+     * @return true if the users are buddies
+     */
+    @Query("SELECT CASE WHEN COUNT(c) > 0 THEN true ELSE false END FROM Connection c "
+           + "WHERE (c.initializer.id = :userA AND c.receiver.id = :userB) "
+           + "OR (c.initializer.id = :userB AND c.receiver.id = :userA)")
+    boolean existsConnectionBetween(@Param("userA") Integer userAId, @Param("userB") Integer userBId);
+
+    /**
+     * Finds the id of the most recent connection involving a user. Each side is sought with its
+     * (fk_xxx_id, starting_date DESC, connection_id DESC) index and only returns its first row.
+     *
+     * @param userId id of the user, either initializer or receiver
+     * @return id of the most recent connection, if any
+     */
+    @Query(value = "SELECT c.connection_id FROM ("
+                   + "(SELECT connection_id, starting_date FROM connection WHERE fk_initializer_id = :userId "
+                   + "ORDER BY starting_date DESC, connection_id DESC LIMIT 1) "
+                   + "UNION ALL "
+                   + "(SELECT connection_id, starting_date FROM connection WHERE fk_receiver_id = :userId "
+                   + "ORDER BY starting_date DESC, connection_id DESC LIMIT 1)"
+                   + ") c ORDER BY c.starting_date DESC, c.connection_id DESC LIMIT 1",
+           nativeQuery = true)
+    Optional<Integer> findMostRecentIdByUserId(@Param("userId") Integer userId);
+
+    /**
+     * Reads a connection as a view model, with its initializer and receiver.
+     *
+     * @param id id of the connection
+     * @return the connection, if it exists
+     */
+    @Query("SELECT new com.paymybuddy.paymybuddy.model.viewmodel.ConnectionViewModel(c.id, "
+           + "i.id, i.email, i.firstName, i.lastName, i.balance, "
+           + "r.id, r.email, r.firstName, r.lastName, r.balance, c.startingDate) "
+           + "FROM Connection c JOIN c.initializer i JOIN c.receiver r WHERE c.id = :id")
+    Optional<ConnectionViewModel> findViewModelById(@Param("id") Integer id);
+
+    /**
+     * Streams connections as view models in ascending id order, from a given id, to list all connections page by page.
+     *
+     * @param afterId  last id of the previous page, 0 for the first one
+     * @param pageable size of the page
+     * @return the following connections
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = Pagination.FETCH_SIZE))
+    @Query("SELECT new com.paymybuddy.paymybuddy.model.viewmodel.ConnectionViewModel(c.id, "
+           + "i.id, i.email, i.firstName, i.lastName, i.balance, "
+           + "r.id, r.email, r.firstName, r.lastName, r.balance, c.startingDate) "
+           + "FROM Connection c JOIN c.initializer i JOIN c.receiver r WHERE c.id > :afterId ORDER BY c.id")
+    Stream<ConnectionViewModel> streamViewModelsAfter(@Param("afterId") Integer afterId, Pageable pageable);
 }
@@ -0,0 +1,9 @@
+package com.paymybuddy.paymybuddy.repository;
+
+import com.paymybuddy.paymybuddy.model.ImportCheckpoint;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImportCheckpointRepository extends CrudRepository<ImportCheckpoint, String> {
+}
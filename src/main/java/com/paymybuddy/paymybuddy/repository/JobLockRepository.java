@@ -0,0 +1,37 @@
+package com.paymybuddy.paymybuddy.repository;
+
+import com.paymybuddy.paymybuddy.model.JobLock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface JobLockRepository extends CrudRepository<JobLock, String> {
+    /**
+     * Leases a job until a given date, in one atomic update, only if its previous lease is over.
+     *
+     * @param name  name of the job
+     * @param now   current date
+     * @param until end of the lease
+     * @return 1 if the job was leased, 0 if another lease is still running
+     */
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :until WHERE l.name = :name AND l.lockedUntil <= :now")
+    int lock(@Param("name") String name, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /**
+     * Ends a lease before its date, only if it was not taken over since it expired.
+     *
+     * @param name  name of the job
+     * @param until end of the lease, as given to {@link #lock}
+     * @param now   current date
+     * @return 1 if the lease was ended, 0 if it was not the job's lease anymore
+     */
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :now WHERE l.name = :name AND l.lockedUntil = :until")
+    int unlock(@Param("name") String name, @Param("until") LocalDateTime until, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,62 @@
+package com.paymybuddy.paymybuddy.repository;
+
+import com.paymybuddy.paymybuddy.model.LedgerEntry;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface LedgerEntryRepository extends CrudRepository<LedgerEntry, Integer> {
+    List<LedgerEntry> findByTransactionId(Integer transactionId);
+
+    /**
+     * Sums credits minus debits of all entries on an account.
+     *
+     * @param account account of the entries
+     * @return the account balance, null if the account has no entry
+     */
+    @Query("SELECT SUM(e.credit - e.debit) FROM LedgerEntry e WHERE e.account = :account")
+    BigDecimal sumByAccount(@Param("account") LedgerEntry.Account account);
+
+    /**
+     * Sums credits minus debits of a user's entries on an account, from a ledger mark.
+     *
+     * @param account account of the entries
+     * @param userId  id of the user
+     * @param since   mark, entries dated before it are not summed
+     * @return the account balance change, null if the user has no entry from the mark
+     */
+    @Query("SELECT SUM(e.credit - e.debit) FROM LedgerEntry e "
+           + "WHERE e.account = :account AND e.userId = :userId AND e.date >= :since")
+    BigDecimal sumByAccountAndUserIdSince(@Param("account") LedgerEntry.Account account,
+                                          @Param("userId") Integer userId,
+                                          @Param("since") LocalDateTime since);
+
+    /**
+     * Sums credits minus debits on an account for each user having entries between two ledger marks.
+     *
+     * @param account account of the entries
+     * @param since   mark, entries dated before it are not summed
+     * @param before  mark, entries dated at it or later are not summed
+     * @return one balance change per user
+     */
+    @Query("SELECT e.userId AS userId, SUM(e.credit - e.debit) AS amount FROM LedgerEntry e "
+           + "WHERE e.account = :account AND e.date >= :since AND e.date < :before GROUP BY e.userId")
+    List<UserAmount> sumByAccountBetween(@Param("account") LedgerEntry.Account account,
+                                         @Param("since") LocalDateTime since,
+                                         @Param("before") LocalDateTime before);
+
+    /**
+     * Balance change of one user.
+     */
+    interface UserAmount {
+        Integer getUserId();
+
+        BigDecimal getAmount();
+    }
+}
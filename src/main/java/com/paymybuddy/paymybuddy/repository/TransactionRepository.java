@@ -1,15 +1,119 @@
 package com.paymybuddy.paymybuddy.repository;
 
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.model.Transaction;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+/**
+ * Queries involving a user from both sides are written as a UNION ALL of an issuer and a payee lookup, so that each
+ * side uses its (fk_xxx_id, date DESC, transaction_id DESC) index instead of scanning the table for the OR.
+ * They only return transaction ids; view models are then read with issuer and payee in one statement.
+ */
 @Repository
 public interface TransactionRepository extends CrudRepository<Transaction, Integer> {
+	/**
+	 * Selects transaction view models with issuer and payee joined, instead of loading them lazily one by one.
+	 */
+	String VIEW_MODEL_SELECT = "SELECT new com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel("
+	                           + "t.id, i.id, i.email, i.firstName, i.lastName, i.balance, "
+	                           + "p.id, p.email, p.firstName, p.lastName, p.balance, "
+	                           + "t.date, t.amount, t.description) "
+	                           + "FROM Transaction t JOIN t.issuer i JOIN t.payee p";
+
 	List<Transaction> findByIssuerOrPayee(User issuer, User payee);
 	List<Transaction> findByIssuer(User issuer);
 	List<Transaction> findByPayee(User payee);
+
+	/**
+	 * Streams transactions as view models in ascending id order, from a given id, to list all transactions page by
+	 * page.
+	 *
+	 * @param afterId  last id of the previous page, 0 for the first one
+	 * @param pageable size of the page
+	 * @return the following transactions
+	 */
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = Pagination.FETCH_SIZE))
+	@Query(VIEW_MODEL_SELECT + " WHERE t.id > :afterId ORDER BY t.id")
+	Stream<TransactionViewModel> streamViewModelsAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+	/**
+	 * Reads the given transactions as view models.
+	 *
+	 * @param ids ids of the transactions
+	 * @return transactions, most recent first
+	 */
+	@Query(VIEW_MODEL_SELECT + " WHERE t.id IN :ids ORDER BY t.date DESC, t.id DESC")
+	List<TransactionViewModel> findViewModelsByIdIn(@Param("ids") Collection<Integer> ids);
+
+	/**
+	 * Finds one page of the ids of the transactions involving a user, most recent first.
+	 *
+	 * @param userId   id of the user, either issuer or payee
+	 * @param pageable requested page
+	 * @return a page of transaction ids
+	 */
+	@Query(value = "SELECT t.transaction_id FROM ("
+	               + "SELECT transaction_id, date FROM transaction WHERE fk_issuer_id = :userId "
+	               + "UNION ALL "
+	               + "SELECT transaction_id, date FROM transaction WHERE fk_payee_id = :userId AND fk_issuer_id <> :userId"
+	               + ") t ORDER BY t.date DESC, t.transaction_id DESC",
+	       countQuery = "SELECT (SELECT count(*) FROM transaction WHERE fk_issuer_id = :userId) "
+	                    + "+ (SELECT count(*) FROM transaction WHERE fk_payee_id = :userId AND fk_issuer_id <> :userId)",
+	       nativeQuery = true)
+	Page<Integer> findPageIdsByUserId(@Param("userId") Integer userId, Pageable pageable);
+
+	/**
+	 * Finds the ids of the most recent transactions involving a user.
+	 *
+	 * @param userId id of the user, either issuer or payee
+	 * @param limit  number of transactions wanted
+	 * @return transaction ids, most recent first
+	 */
+	@Query(value = "SELECT t.transaction_id FROM ("
+	               + "(SELECT transaction_id, date FROM transaction WHERE fk_issuer_id = :userId "
+	               + "ORDER BY date DESC, transaction_id DESC LIMIT :limit) "
+	               + "UNION ALL "
+	               + "(SELECT transaction_id, date FROM transaction WHERE fk_payee_id = :userId AND fk_issuer_id <> :userId "
+	               + "ORDER BY date DESC, transaction_id DESC LIMIT :limit)"
+	               + ") t ORDER BY t.date DESC, t.transaction_id DESC LIMIT :limit",
+	       nativeQuery = true)
+	List<Integer> findFirstIdsByUserId(@Param("userId") Integer userId, @Param("limit") int limit);
+
+	/**
+	 * Finds the ids of the transactions involving a user that are older than the given position.
+	 *
+	 * @param userId id of the user, either issuer or payee
+	 * @param date   date of the last transaction already read
+	 * @param id     id of the last transaction already read
+	 * @param limit  number of transactions wanted
+	 * @return transaction ids, most recent first
+	 */
+	@Query(value = "SELECT t.transaction_id FROM ("
+	               + "(SELECT transaction_id, date FROM transaction WHERE fk_issuer_id = :userId "
+	               + "AND (date < :date OR (date = :date AND transaction_id < :id)) "
+	               + "ORDER BY date DESC, transaction_id DESC LIMIT :limit) "
+	               + "UNION ALL "
+	               + "(SELECT transaction_id, date FROM transaction WHERE fk_payee_id = :userId AND fk_issuer_id <> :userId "
+	               + "AND (date < :date OR (date = :date AND transaction_id < :id)) "
+	               + "ORDER BY date DESC, transaction_id DESC LIMIT :limit)"
+	               + ") t ORDER BY t.date DESC, t.transaction_id DESC LIMIT :limit",
+	       nativeQuery = true)
+	List<Integer> findIdsByUserIdBefore(@Param("userId") Integer userId,
+	                                    @Param("date") LocalDateTime date,
+	                                    @Param("id") Integer id,
+	                                    @Param("limit") int limit);
 }
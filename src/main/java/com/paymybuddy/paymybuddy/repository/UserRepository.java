@@ -1,10 +1,24 @@
 package com.paymybuddy.paymybuddy.repository;
 
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends CrudRepository<User, Integer> {
@@ -12,5 +26,77 @@ public interface UserRepository extends CrudRepository<User, Integer> {
 
     Optional<User> findByEmail(String email);
 
+    List<User> findByEmailIn(Collection<String> emails);
+
     Optional<User> findByFirstNameAndLastName(String firstName, String lastName);
+
+    /**
+     * Reads user ids in ascending order, from a given id, to go through all users chunk by chunk.
+     *
+     * @param afterId  last id of the previous chunk, 0 for the first one
+     * @param pageable size of the chunk
+     * @return the following user ids
+     */
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Integer> findIdsAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+    /**
+     * Streams users as view models in ascending id order, from a given id, to list all users page by page.
+     *
+     * @param afterId  last id of the previous page, 0 for the first one
+     * @param pageable size of the page
+     * @return the following users
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = Pagination.FETCH_SIZE))
+    @Query("SELECT new com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel("
+           + "u.id, u.email, u.firstName, u.lastName, u.balance) "
+           + "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    Stream<UserViewModel> streamViewModelsAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+    /**
+     * Reads users as view models, in one statement.
+     *
+     * @param ids ids of the users
+     * @return the existing users, in no particular order
+     */
+    @Query("SELECT new com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel("
+           + "u.id, u.email, u.firstName, u.lastName, u.balance) "
+           + "FROM User u WHERE u.id IN :ids")
+    List<UserViewModel> findViewModelsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Reads a user and locks their row until the end of the transaction (SELECT ... FOR UPDATE).
+     *
+     * @param id id of the user
+     * @return locked user, if it exists
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> findForUpdateById(@Param("id") Integer id);
+
+    /**
+     * Adds an amount to a user's balance in one atomic update, without reading the balance first.
+     * The user's version is incremented, so that stale copies of the user can not be saved over it.
+     *
+     * @param id     id of the user
+     * @param amount amount to add
+     * @return number of updated users, 0 if the user does not exist
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.balance = u.balance + :amount, u.version = u.version + 1 WHERE u.id = :id")
+    int creditBalance(@Param("id") Integer id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Subtracts an amount from a user's balance in one atomic update, only if the balance covers it.
+     * The user's version is incremented, so that stale copies of the user can not be saved over it, but not compared:
+     * concurrent updates of the balance wait for each other's row lock instead of failing.
+     *
+     * @param id     id of the user
+     * @param amount amount to subtract
+     * @return number of updated users, 0 if the balance is insufficient or the user does not exist
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.balance = u.balance - :amount, u.version = u.version + 1 "
+           + "WHERE u.id = :id AND u.balance >= :amount")
+    int debitBalance(@Param("id") Integer id, @Param("amount") BigDecimal amount);
 }
@@ -0,0 +1,192 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.BalanceSnapshot;
+import com.paymybuddy.paymybuddy.model.JobLock;
+import com.paymybuddy.paymybuddy.model.LedgerEntry;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.BalanceSnapshotRepository;
+import com.paymybuddy.paymybuddy.repository.JobLockRepository;
+import com.paymybuddy.paymybuddy.repository.LedgerEntryRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Checkpoints user balances from the ledger, then checks that each user's balance still matches the ledger.
+ * <p>
+ * Each run snapshots the users having entries dated between the previous high-water mark and the new one, so it
+ * only reads the entries written since the previous run. The new mark is paymybuddy.snapshot.settle-seconds before
+ * the run, so that entries of transactions still running are left to the next run.
+ * <p>
+ * Marks are dates rather than entry ids: ids are reserved by blocks, so an entry may be numbered below entries
+ * committed long before it, and an id mark would leave it out of the snapshots for good. Dated from its own
+ * transaction, a late entry is folded into the first run after it settles instead. The settle delay must exceed the
+ * longest transaction writing ledger entries, which the balance.mismatches meter reports otherwise.
+ * <p>
+ * The scheduled job runs on one application instance at a time, the one leasing its {@link JobLock} row; a user has
+ * at most one snapshot per mark besides, so that overlapping runs can not save a user twice.
+ */
+@Service
+@Slf4j
+public class BalanceSnapshotService {
+	/**
+	 * Number of users snapshotted or verified together.
+	 */
+	static final int CHUNK_SIZE = 500;
+
+	/**
+	 * Name of the scheduled job in the job_lock table.
+	 */
+	static final String JOB_NAME = "balance_snapshot";
+
+	private final LedgerEntryRepository     ledgerEntryRepository;
+	private final BalanceSnapshotRepository balanceSnapshotRepository;
+	private final UserRepository            userRepository;
+	private final JobLockRepository         jobLockRepository;
+	private final LedgerService             ledgerService;
+	private final TransactionTemplate       transactionTemplate;
+	private final Clock                     clock;
+	private final long                      settleSeconds;
+	private final long                      lockSeconds;
+	private final Counter                   mismatches;
+
+	public BalanceSnapshotService(LedgerEntryRepository ledgerEntryRepository,
+			BalanceSnapshotRepository balanceSnapshotRepository, UserRepository userRepository,
+			JobLockRepository jobLockRepository, LedgerService ledgerService,
+			PlatformTransactionManager transactionManager, Clock clock, MeterRegistry meterRegistry,
+			@Value("${paymybuddy.snapshot.settle-seconds:60}") long settleSeconds,
+			@Value("${paymybuddy.snapshot.lock-seconds:3600}") long lockSeconds) {
+		this.ledgerEntryRepository     = ledgerEntryRepository;
+		this.balanceSnapshotRepository = balanceSnapshotRepository;
+		this.userRepository            = userRepository;
+		this.jobLockRepository         = jobLockRepository;
+		this.ledgerService             = ledgerService;
+		this.transactionTemplate       = new TransactionTemplate(transactionManager);
+		this.clock                     = clock;
+		this.settleSeconds             = settleSeconds;
+		this.lockSeconds               = lockSeconds;
+		this.mismatches = Counter.builder("balance.mismatches")
+				.description("User balances not matching their ledger entries")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Takes the snapshots, then verifies all balances, unless another instance of the application is doing it. The
+	 * job is leased for paymybuddy.snapshot.lock-seconds at most, so that a crashed instance does not hold it forever.
+	 *
+	 * @return false if the job was skipped.
+	 */
+	@Scheduled(cron = "${paymybuddy.snapshot.cron:0 0 2 * * *}")
+	public boolean snapshotAndVerify() {
+		LocalDateTime now   = LocalDateTime.now(clock);
+		// saved to the second by every database
+		LocalDateTime until = now.plusSeconds(lockSeconds).truncatedTo(ChronoUnit.SECONDS);
+		if (!Integer.valueOf(1).equals(transactionTemplate.execute(
+				status -> jobLockRepository.lock(JOB_NAME, now, until)))) {
+			log.info("Balance snapshots are already running on another instance, skipped.");
+			return false;
+		}
+		try {
+			takeSnapshots();
+			verifyBalances();
+		} finally {
+			transactionTemplate.execute(status -> jobLockRepository.unlock(JOB_NAME, until, LocalDateTime.now(clock)));
+		}
+		return true;
+	}
+
+	/**
+	 * Snapshots the balance of every user having ledger entries since the previous snapshots.
+	 *
+	 * @return number of snapshots taken.
+	 */
+	public int takeSnapshots() {
+		Integer taken = transactionTemplate.execute(status -> {
+			LocalDateTime from = balanceSnapshotRepository.findHighWaterMark();
+			LocalDateTime now  = LocalDateTime.now(clock);
+			// saved to the second by every database, as entry dates
+			LocalDateTime upTo = now.minusSeconds(settleSeconds).truncatedTo(ChronoUnit.SECONDS);
+			if (from == null) {
+				from = BalanceSnapshot.NO_SNAPSHOT;
+			}
+			if (!upTo.isAfter(from)) {
+				return 0;
+			}
+			List<LedgerEntryRepository.UserAmount> changes =
+					ledgerEntryRepository.sumByAccountBetween(LedgerEntry.Account.USER, from, upTo);
+			for (int i = 0; i < changes.size(); i += CHUNK_SIZE) {
+				snapshot(changes.subList(i, Math.min(i + CHUNK_SIZE, changes.size())), upTo, now);
+			}
+			return changes.size();
+		});
+		log.info("Took " + taken + " balance snapshots.");
+		return taken;
+	}
+
+	/**
+	 * Adds balance changes to the users' previous snapshots and saves them as new snapshots.
+	 */
+	private void snapshot(List<LedgerEntryRepository.UserAmount> changes, LocalDateTime upTo, LocalDateTime now) {
+		Map<Integer, BigDecimal> previous = balanceSnapshotRepository
+				.findLatestByUserIdIn(changes.stream().map(LedgerEntryRepository.UserAmount :: getUserId).toList())
+				.stream()
+				.collect(Collectors.toMap(BalanceSnapshot :: getUserId, BalanceSnapshot :: getBalance));
+		balanceSnapshotRepository.saveAll(changes.stream()
+				.map(change -> new BalanceSnapshot(null, change.getUserId(),
+						previous.getOrDefault(change.getUserId(), BigDecimal.ZERO).add(change.getAmount()), upTo, now))
+				.toList());
+	}
+
+	/**
+	 * Checks every user's balance against their ledger balance. Each user is locked while checked, so that a
+	 * transfer can not change the balance between both reads. Mismatches are logged and counted in the
+	 * balance.mismatches meter.
+	 *
+	 * @return number of users whose balance does not match the ledger.
+	 */
+	public int verifyBalances() {
+		int           found = 0;
+		List<Integer> ids   = userRepository.findIdsAfter(0, PageRequest.of(0, CHUNK_SIZE));
+		while (!ids.isEmpty()) {
+			for (Integer id : ids) {
+				if (Boolean.FALSE.equals(transactionTemplate.execute(status -> matchesLedger(id)))) {
+					found++;
+				}
+			}
+			ids = userRepository.findIdsAfter(ids.get(ids.size() - 1), PageRequest.of(0, CHUNK_SIZE));
+		}
+		log.info("Verified balances, " + found + " not matching the ledger.");
+		return found;
+	}
+
+	private boolean matchesLedger(Integer id) {
+		User user = userRepository.findForUpdateById(id).orElse(null);
+		if (user == null) {
+			// deleted since its id was read
+			return true;
+		}
+		BigDecimal ledgerBalance = ledgerService.getUserBalance(id);
+		if (user.getBalance().compareTo(ledgerBalance) != 0) {
+			mismatches.increment();
+			log.error("Balance of user " + id + " is " + user.getBalance() + " but the ledger gives " + ledgerBalance
+					+ ".");
+			return false;
+		}
+		return true;
+	}
+}
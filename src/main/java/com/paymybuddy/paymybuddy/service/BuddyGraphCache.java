@@ -0,0 +1,147 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the buddy ids of each user as a sorted int array, so that buddy checks do not hit the database.
+ * A user's buddies are loaded on first use, and new connections are added once their transaction is committed.
+ * Hits and misses are published as the cache.gets meter of the buddyGraph cache.
+ * <p>
+ * At most paymybuddy.buddy-cache.max-size users are kept, the least used ones being evicted first. Each instance of
+ * the application has its own cache, which only sees the connections it saved: users are read again
+ * paymybuddy.buddy-cache.expire-after-write-seconds after being loaded, and two users not found to be buddies in the
+ * cache are checked against the database before being refused.
+ */
+@Component
+public class BuddyGraphCache {
+	private static final String CACHE_NAME = "buddyGraph";
+
+	private final ConnectionRepository          connectionRepository;
+	private final ConcurrentMap<Integer, int[]> buddyIds;
+	// Incremented before each update, so that buddies read before a commit are not cached after it
+	private final AtomicLong                    generation = new AtomicLong();
+	private final Counter                       hits;
+	private final Counter                       misses;
+
+	public BuddyGraphCache(ConnectionRepository connectionRepository, MeterRegistry meterRegistry,
+			@Value("${paymybuddy.buddy-cache.max-size:100000}") long maxSize,
+			@Value("${paymybuddy.buddy-cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+		this.connectionRepository = connectionRepository;
+		this.buddyIds = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+				// evicted by the thread adding the user rather than by the common fork join pool
+				.executor(Runnable :: run)
+				.<Integer, int[]>build()
+				.asMap();
+		hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+				.register(meterRegistry);
+		misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+				.register(meterRegistry);
+		Gauge.builder("cache.size", buddyIds, Map :: size).tag("cache", CACHE_NAME).register(meterRegistry);
+	}
+
+	/**
+	 * Checks whether two users are buddies. Users not connected in the cache are checked against the database, as
+	 * they may have been connected by another instance, and the user's buddies are read again if so.
+	 *
+	 * @param userId  id of a user
+	 * @param buddyId id of the possible buddy
+	 * @return true if both users are connected
+	 */
+	public boolean areBuddies(int userId, int buddyId) {
+		if (Arrays.binarySearch(getBuddyIds(userId), buddyId) >= 0) {
+			return true;
+		}
+		if (connectionRepository.existsConnectionBetween(userId, buddyId)) {
+			generation.incrementAndGet();
+			buddyIds.remove(userId);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the ids of a user's buddies, loading them if the user is not cached yet.
+	 *
+	 * @param userId id of the user
+	 * @return sorted ids of the user's buddies, must not be modified
+	 */
+	public int[] getBuddyIds(int userId) {
+		int[] cached = buddyIds.get(userId);
+		if (cached != null) {
+			hits.increment();
+			return cached;
+		}
+		misses.increment();
+		long  loadGeneration = generation.get();
+		int[] loaded = connectionRepository.findBuddyIdsByUserId(userId).stream()
+				.mapToInt(Integer :: intValue)
+				.sorted()
+				.toArray();
+		// Only cache the buddies if no connection was committed since they were read
+		buddyIds.compute(userId, (id, current) -> {
+			if (current != null) {
+				return current;
+			}
+			return generation.get() == loadGeneration ? loaded : null;
+		});
+		return loaded;
+	}
+
+	/**
+	 * Adds a new connection to the cached buddies once the current transaction is committed.
+	 * Nothing is changed if the transaction is rolled back.
+	 *
+	 * @param initializerId id of the connection initializer
+	 * @param receiverId    id of the connection receiver
+	 */
+	public void connectionSaved(int initializerId, int receiverId) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					addBuddies(initializerId, receiverId);
+				}
+			});
+		} else {
+			addBuddies(initializerId, receiverId);
+		}
+	}
+
+	private void addBuddies(int initializerId, int receiverId) {
+		generation.incrementAndGet();
+		buddyIds.computeIfPresent(initializerId, (id, ids) -> insert(ids, receiverId));
+		buddyIds.computeIfPresent(receiverId, (id, ids) -> insert(ids, initializerId));
+	}
+
+	/**
+	 * Returns a copy of the sorted ids with the given id inserted at its place.
+	 */
+	private static int[] insert(int[] ids, int id) {
+		int index = Arrays.binarySearch(ids, id);
+		if (index >= 0) {
+			return ids;
+		}
+		int   insertion = -index - 1;
+		int[] updated   = new int[ids.length + 1];
+		System.arraycopy(ids, 0, updated, 0, insertion);
+		updated[insertion] = id;
+		System.arraycopy(ids, insertion, updated, insertion + 1, ids.length - insertion);
+		return updated;
+	}
+}
@@ -1,5 +1,6 @@
 package com.paymybuddy.paymybuddy.service;
 
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.exceptions.AlreadyABuddyException;
 import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
 import com.paymybuddy.paymybuddy.model.Connection;
@@ -11,15 +12,22 @@ import com.paymybuddy.paymybuddy.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.time.Clock;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -29,7 +37,7 @@ public class ConnectionService {
 	ConnectionRepository connectionRepository;
 
 	@Autowired
-	PaginationService paginationService;
+	BuddyGraphCache buddyGraphCache;
 
 	@Autowired
 	UserRepository userRepository;
@@ -37,47 +45,70 @@ public class ConnectionService {
 	Clock          clock;
 
 	/**
-	 * List all user's connection
+	 * List all user's connection, in ascending buddy id order.
+	 * Buddy ids are read from the buddy graph cache, connections are only queried for users not cached yet.
 	 *
 	 * @param user user for which the connections are wanted
 	 * @return a list of user with their name, first name, last name and balance
 	 */
 	public List<UserViewModel> getUserConnections(User user) {
-		Integer             userId      = user.getId();
-		List<UserViewModel> connections = new ArrayList<>();
-		// Get all connections where user is involved
-		List<Connection> connectionsWhereUserIsInvolved = connectionRepository
-				.findByInitializerOrReceiver(user, user);
-		log.debug("Found connections involving " + user.getEmail() + ":\n" + connectionsWhereUserIsInvolved);
-		// If user was initializer, then add the receiver to list and vice versa
-		for (Connection connection : connectionsWhereUserIsInvolved) {
-			User initializer = connection.getInitializer();
-			User receiver    = connection.getReceiver();
-			if (userId.equals(initializer.getId())) {
-				connections.add(UserService.userToViewModel(receiver));
-			} else if (userId.equals(receiver.getId())) {
-				connections.add(UserService.userToViewModel(initializer));
-			}
-		}
+		List<UserViewModel> connections =
+				getBuddies(Arrays.stream(buddyGraphCache.getBuddyIds(user.getId())).boxed().toList());
 		log.info("Connections for " + user.getEmail() + ":\n" + connections);
 		return connections;
 	}
 
+	/**
+	 * Returns the most recent connection of a user, whichever side they are on.
+	 *
+	 * @param user user for which the connection is wanted
+	 * @return the most recent connection, or an empty Optional if the user has no buddy
+	 */
+	public Optional<ConnectionViewModel> getMostRecentUserConnection(User user) {
+		return connectionRepository.findMostRecentIdByUserId(user.getId())
+				.flatMap(connectionRepository :: findViewModelById);
+	}
+
+	/**
+	 * Checks whether two users are buddies, whoever initialized the connection.
+	 * The user's buddies are read from the buddy graph cache.
+	 *
+	 * @param user  a user
+	 * @param buddy the possible buddy
+	 * @return true if both users are connected
+	 */
+	public boolean existsConnectionBetween(User user, User buddy) {
+		return buddyGraphCache.areBuddies(user.getId(), buddy.getId());
+	}
 
 	/**
-	 * Returns a paginated list of user's connections.
+	 * Returns a paginated list of user's connections, in ascending buddy id order.
 	 *
 	 * @param pageable Pageable object.
 	 * @param user       Connected user.
 	 * @return a paginated list of connections.
 	 */
-	public Page<?> getPaginatedUserConnections(Pageable pageable, User user) {
-		// Get raw list of connections
-		List<UserViewModel> connections = getUserConnections(user);
-		return paginationService.getPaginatedList(pageable, connections);
+	public Page<UserViewModel> getPaginatedUserConnections(Pageable pageable, User user) {
+		// Only the requested page of buddies is read, and counted without reading the others
+		Page<Integer> buddyIds = connectionRepository.findPageBuddyIdsByUserId(user.getId(), pageable);
+		return new PageImpl<>(getBuddies(buddyIds.getContent()), pageable, buddyIds.getTotalElements());
 	}
 
-
+	/**
+	 * Reads buddies by primary key.
+	 *
+	 * @param buddyIds ids of the buddies
+	 * @return buddies in the order of their ids, deleted ones left out
+	 */
+	private List<UserViewModel> getBuddies(List<Integer> buddyIds) {
+		if (buddyIds.isEmpty()) {
+			return List.of();
+		}
+		// Balances change with each payment, so the buddies themselves are read by primary key
+		Map<Integer, UserViewModel> buddies = userRepository.findViewModelsByIdIn(buddyIds).stream()
+				.collect(Collectors.toMap(UserViewModel :: getId, Function.identity()));
+		return buddyIds.stream().map(buddies :: get).filter(Objects :: nonNull).toList();
+	}
 
 	/**
 	 * Creates a connection between two users and saves it to database.
@@ -105,7 +136,8 @@ public class ConnectionService {
 			throw new BuddyNotFoundException(errorMessage);
 		}
 		User receiver = optionalReceiver.get();
-		if (getUserConnections(initializer).contains(UserService.userToViewModel(receiver))) {
+		// Checked against the database, which is the reference before adding a connection
+		if (connectionRepository.existsConnectionBetween(initializer.getId(), receiver.getId())) {
 			String errorMessage = receiver.getFirstName() + " " + receiver.getLastName() + " is already a Buddy!";
 			log.error(errorMessage);
 			throw new AlreadyABuddyException(errorMessage);
@@ -131,10 +163,7 @@ public class ConnectionService {
 		connection.setInitializer(initializer);
 		connection.setReceiver(receiver);
 		connection.setStartingDate(LocalDateTime.now(clock));
-		// Add connection to initializer's initiatedConnections
-		initializer.getInitializedConnections().add(connection);
-		// Add connection to receiver's receivedConnections
-		receiver.getReceivedConnections().add(connection);
+		// Users' connection lists are left alone, buddies are always read with a query
 		return connection;
 	}
 
@@ -146,20 +175,21 @@ public class ConnectionService {
 	 */
 	@Transactional
 	public Connection saveConnection(Connection connection) {
-		return connectionRepository.save(connection);
+		Connection savedConnection = connectionRepository.save(connection);
+		buddyGraphCache.connectionSaved(connection.getInitializer().getId(), connection.getReceiver().getId());
+		return savedConnection;
 	}
 
 	/**
-	 * Lists all connections in data base
+	 * Streams one page of connections in data base, in ascending id order.
 	 *
-	 * @return a list of connections
+	 * @param afterId id of the last connection of the previous page, 0 for the first page
+	 * @param size    number of connections wanted, at most {@link Pagination#MAX_STREAMED_SIZE}
+	 * @return connections, to be read and closed within a transaction
 	 */
-	public List<ConnectionViewModel> getConnections() {
-		Iterable<Connection>      connections          = connectionRepository.findAll();
-		List<ConnectionViewModel> connectionViewModels = new ArrayList<>();
-		// extract info from user to user view model
-		connections.forEach(connection -> connectionViewModels.add(connectionToViewModel(connection)));
-		return connectionViewModels;
+	public Stream<ConnectionViewModel> streamConnections(int afterId, int size) {
+		int limit = Math.min(Math.max(size, 1), Pagination.MAX_STREAMED_SIZE);
+		return connectionRepository.streamViewModelsAfter(afterId, PageRequest.of(0, limit));
 	}
 
 	/**
@@ -169,11 +199,8 @@ public class ConnectionService {
 	 * @return Optional connection
 	 */
 	public Optional<ConnectionViewModel> getConnectionById(Integer id) {
-		if (connectionRepository.findById(id).isPresent()) {
-			return Optional.of(connectionToViewModel(connectionRepository.findById(id).get()));
-		} else {
-			return Optional.empty();
-		}
+		// Read with both users, which are lazy and could not be loaded once the query is over
+		return connectionRepository.findViewModelById(id);
 	}
 
 	public static ConnectionViewModel connectionToViewModel(Connection connection) {
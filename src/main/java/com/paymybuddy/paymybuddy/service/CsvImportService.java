@@ -0,0 +1,370 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.ImportCheckpoint;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.ImportCheckpointRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Imports users, connections and historical transactions from partner CSV files.
+ * <p>
+ * Files are streamed line by line and written by chunks of {@link #CHUNK_SIZE} rows, each chunk in one database
+ * transaction with JDBC batches. The transaction also saves the number of the chunk's last line as the import's
+ * checkpoint, so an import failing half way resumes after the last committed chunk when run again on the same file,
+ * unchanged: same path, size and modification date. The checkpoint is deleted once the import completes, so a file
+ * imported again is read whole. Malformed lines and rows already in database are skipped and counted.
+ */
+@Service
+@Slf4j
+public class CsvImportService {
+	/**
+	 * Number of rows written in each database transaction.
+	 */
+	static final int CHUNK_SIZE = 1000;
+
+	/**
+	 * Passwords already hashed by BCrypt are imported as they are.
+	 */
+	private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$\\d\\d\\$[./A-Za-z0-9]{53}$");
+
+	private final UserRepository             userRepository;
+	private final ConnectionRepository       connectionRepository;
+	private final TransactionRepository      transactionRepository;
+	private final ImportCheckpointRepository importCheckpointRepository;
+	private final LedgerService              ledgerService;
+	private final BuddyGraphCache            buddyGraphCache;
+	private final BCryptPasswordEncoder      passwordEncoder;
+	private final TransactionTemplate        transactionTemplate;
+	private final Clock                      clock;
+
+	public CsvImportService(UserRepository userRepository, ConnectionRepository connectionRepository,
+			TransactionRepository transactionRepository, ImportCheckpointRepository importCheckpointRepository,
+			LedgerService ledgerService, BuddyGraphCache buddyGraphCache, BCryptPasswordEncoder passwordEncoder,
+			PlatformTransactionManager transactionManager, Clock clock) {
+		this.userRepository             = userRepository;
+		this.connectionRepository       = connectionRepository;
+		this.transactionRepository      = transactionRepository;
+		this.importCheckpointRepository = importCheckpointRepository;
+		this.ledgerService              = ledgerService;
+		this.buddyGraphCache            = buddyGraphCache;
+		this.passwordEncoder            = passwordEncoder;
+		this.transactionTemplate        = new TransactionTemplate(transactionManager);
+		this.clock                      = clock;
+	}
+
+	/**
+	 * Number of rows imported and skipped by an import.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class ImportReport {
+		private final int imported;
+		private final int skipped;
+	}
+
+	/**
+	 * Imports users from lines email,password,firstname,lastname,balance. Emails are saved in lower case, as by
+	 * signup, and compared whatever their case in all imports.
+	 * Passwords in clear are hashed by a pool of one thread per processor, before the chunk's transaction starts.
+	 * Imported balances are recorded in the ledger as deposits.
+	 *
+	 * @param file CSV file, with a header line
+	 * @return imported and skipped users.
+	 */
+	public ImportReport importUsers(Path file) {
+		Set<String>     emails      = new HashSet<>();
+		ExecutorService hashingPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			return importFile(file, "users", 5, fields -> {
+				User user = new User();
+				user.setEmail(UserService.normalizeEmail(fields[0]));
+				user.setPassword(fields[1]);
+				user.setFirstName(fields[2].trim());
+				user.setLastName(fields[3].trim());
+				user.setBalance(new BigDecimal(fields[4].trim()).setScale(2, RoundingMode.HALF_UP));
+				if (UserService.isInvalidEmail(user.getEmail()) || user.getPassword().isEmpty()
+						|| user.getBalance().signum() < 0) {
+					throw new IllegalArgumentException("invalid user");
+				}
+				// duplicates within the file are skipped without querying the database
+				return emails.add(user.getEmail()) ? user : null;
+			}, new ChunkWriter<>() {
+				@Override
+				public void prepare(List<User> users) {
+					hashPasswords(users, hashingPool);
+				}
+
+				@Override
+				public int write(List<User> users) {
+					return saveUsers(users);
+				}
+			});
+		} finally {
+			hashingPool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Imports connections from lines initializerEmail,receiverEmail,startingDate.
+	 * Connections between unknown users, from a user to themselves or between users already connected are skipped.
+	 *
+	 * @param file CSV file, with a header line
+	 * @return imported and skipped connections.
+	 */
+	public ImportReport importConnections(Path file) {
+		Set<Long> pairs = new HashSet<>();
+		return importFile(file, "connections", 3, fields -> new String[]{
+				UserService.normalizeEmail(fields[0]),
+				UserService.normalizeEmail(fields[1]),
+				LocalDateTime.parse(fields[2].trim()).toString()
+		}, rows -> saveConnections(rows, pairs));
+	}
+
+	/**
+	 * Imports past transactions from lines issuerEmail,payeeEmail,date,amount,description.
+	 * They are history only: balances and ledger are left unchanged, as imported balances already include them.
+	 *
+	 * @param file CSV file, with a header line
+	 * @return imported and skipped transactions.
+	 */
+	public ImportReport importTransactions(Path file) {
+		return importFile(file, "transactions", 5, fields -> {
+			BigDecimal amount = new BigDecimal(fields[3].trim()).setScale(2, RoundingMode.HALF_UP);
+			if (amount.signum() <= 0) {
+				throw new IllegalArgumentException("invalid amount");
+			}
+			return new String[]{
+					UserService.normalizeEmail(fields[0]),
+					UserService.normalizeEmail(fields[1]),
+					LocalDateTime.parse(fields[2].trim()).toString(),
+					amount.toPlainString(),
+					fields[4].trim()
+			};
+		}, this :: saveTransactions);
+	}
+
+	/**
+	 * Writes the rows of a chunk.
+	 */
+	private interface ChunkWriter<T> {
+		/**
+		 * Prepares the rows out of any database transaction.
+		 */
+		default void prepare(List<T> rows) {
+		}
+
+		/**
+		 * Saves the rows not already in database, within the chunk's transaction.
+		 *
+		 * @return number of rows saved.
+		 */
+		int write(List<T> rows);
+	}
+
+	/**
+	 * Streams the file after its checkpoint, parsing each line and writing them by chunks.
+	 *
+	 * @param parser returns the row of a line, null to skip it, or throws IllegalArgumentException if malformed.
+	 */
+	private <T> ImportReport importFile(Path file, String kind, int columns, Function<String[], T> parser,
+			ChunkWriter<T> writer) {
+		String name       = checkpointName(kind, file);
+		int    checkpoint = importCheckpointRepository.findById(name).map(ImportCheckpoint :: getLineNumber).orElse(0);
+		if (checkpoint > 0) {
+			log.info("Resuming import of " + kind + " from " + file + " after line " + checkpoint + ".");
+		}
+		int imported   = 0;
+		int skipped    = 0;
+		int lineNumber = 0;
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+			String  line;
+			// the header is line 0
+			reader.readLine();
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (lineNumber <= checkpoint || line.isBlank()) {
+					continue;
+				}
+				T row = parse(line, columns, parser);
+				if (row == null) {
+					log.warn("Skipped line " + lineNumber + " of " + file + ".");
+					skipped++;
+				} else {
+					chunk.add(row);
+				}
+				if (chunk.size() == CHUNK_SIZE) {
+					int written = writeChunk(name, lineNumber, chunk, writer, false);
+					imported += written;
+					skipped += chunk.size() - written;
+					chunk.clear();
+				}
+			}
+			int written = writeChunk(name, lineNumber, chunk, writer, true);
+			imported += written;
+			skipped += chunk.size() - written;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + file + ".", e);
+		}
+		log.info("Imported " + imported + " " + kind + " from " + file + ", skipped " + skipped + ".");
+		return new ImportReport(imported, skipped);
+	}
+
+	private static <T> T parse(String line, int columns, Function<String[], T> parser) {
+		// the last column may contain commas
+		String[] fields = line.split(",", columns);
+		if (fields.length != columns) {
+			return null;
+		}
+		try {
+			return parser.apply(fields);
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Names the checkpoint of an import after the file's path, size and modification date, so that another file
+	 * with the same name, or the same file changed since, is not resumed from a checkpoint that is not its own.
+	 */
+	static String checkpointName(String kind, Path file) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			String version = file.toAbsolutePath() + ":" + attributes.size() + ":"
+					+ attributes.lastModifiedTime().toMillis();
+			return kind + ":" + UUID.nameUUIDFromBytes(version.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + file + ".", e);
+		}
+	}
+
+	/**
+	 * Writes a chunk and moves the checkpoint after it, or deletes the checkpoint with the last chunk.
+	 */
+	private <T> int writeChunk(String name, int lastLine, List<T> chunk, ChunkWriter<T> writer, boolean last) {
+		writer.prepare(chunk);
+		Integer written = transactionTemplate.execute(status -> {
+			int saved = chunk.isEmpty() ? 0 : writer.write(chunk);
+			if (last) {
+				importCheckpointRepository.findById(name).ifPresent(importCheckpointRepository :: delete);
+			} else {
+				importCheckpointRepository.save(new ImportCheckpoint(name, lastLine, LocalDateTime.now(clock)));
+			}
+			return saved;
+		});
+		return written == null ? 0 : written;
+	}
+
+	private void hashPasswords(List<User> users, ExecutorService hashingPool) {
+		List<Future<?>> hashes = new ArrayList<>(users.size());
+		for (User user : users) {
+			if (!BCRYPT_HASH.matcher(user.getPassword()).matches()) {
+				hashes.add(hashingPool.submit(() -> user.setPassword(passwordEncoder.encode(user.getPassword()))));
+			}
+		}
+		try {
+			for (Future<?> hash : hashes) {
+				hash.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while hashing passwords.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not hash passwords.", e.getCause());
+		}
+	}
+
+	private int saveUsers(List<User> users) {
+		Set<String> existing = userRepository.findByEmailIn(users.stream().map(User :: getEmail).toList())
+				.stream()
+				.map(user -> UserService.normalizeEmail(user.getEmail()))
+				.collect(Collectors.toSet());
+		List<User> newUsers = users.stream().filter(user -> !existing.contains(user.getEmail())).toList();
+		userRepository.saveAll(newUsers);
+		ledgerService.recordOpeningBalances(newUsers);
+		return newUsers.size();
+	}
+
+	private int saveConnections(List<String[]> rows, Set<Long> pairs) {
+		Map<String, User> users = findUsers(rows.stream().flatMap(row -> Stream.of(row[0], row[1])));
+		List<Integer>     ids   = users.values().stream().map(User :: getId).toList();
+		for (Connection connection : connectionRepository.findByInitializerIdInOrReceiverIdIn(ids, ids)) {
+			pairs.add(pair(connection.getInitializer().getId(), connection.getReceiver().getId()));
+		}
+		List<Connection> connections = new ArrayList<>();
+		for (String[] row : rows) {
+			User initializer = users.get(row[0]);
+			User receiver    = users.get(row[1]);
+			if (initializer != null && receiver != null && !initializer.equals(receiver)
+					&& pairs.add(pair(initializer.getId(), receiver.getId()))) {
+				connections.add(new Connection(null, initializer, receiver, LocalDateTime.parse(row[2])));
+			}
+		}
+		connectionRepository.saveAll(connections);
+		connections.forEach(connection -> buddyGraphCache.connectionSaved(connection.getInitializer().getId(),
+				connection.getReceiver().getId()));
+		return connections.size();
+	}
+
+	private int saveTransactions(List<String[]> rows) {
+		Map<String, User> users        = findUsers(rows.stream().flatMap(row -> Stream.of(row[0], row[1])));
+		List<Transaction> transactions = new ArrayList<>();
+		for (String[] row : rows) {
+			User issuer = users.get(row[0]);
+			User payee  = users.get(row[1]);
+			if (issuer != null && payee != null && !issuer.equals(payee)) {
+				transactions.add(new Transaction(null, issuer, payee, LocalDateTime.parse(row[2]),
+						new BigDecimal(row[3]), row[4]));
+			}
+		}
+		transactionRepository.saveAll(transactions);
+		return transactions.size();
+	}
+
+	/**
+	 * @return users by normalized email, the first one of users whose emails only differ by case.
+	 */
+	private Map<String, User> findUsers(Stream<String> emails) {
+		return userRepository.findByEmailIn(emails.collect(Collectors.toSet()))
+				.stream()
+				.collect(Collectors.toMap(user -> UserService.normalizeEmail(user.getEmail()), Function.identity(),
+						(first, second) -> first));
+	}
+
+	/**
+	 * Key of a connection between two users, whichever initialized it.
+	 */
+	private static long pair(int firstId, int secondId) {
+		return ((long) Math.min(firstId, secondId) << 32) | Math.max(firstId, secondId);
+	}
+}
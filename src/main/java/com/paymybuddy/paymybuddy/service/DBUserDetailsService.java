@@ -28,7 +28,7 @@ public class DBUserDetailsService implements UserDetailsService {
      */
     @Override public UserDetails loadUserByUsername(String username) throws BuddyNotFoundException {
         // source: https://youtu.be/TNt3GHuayXs
-        Optional<User> user = userRepository.findByEmail(username);
+        Optional<User> user = userRepository.findByEmail(UserService.normalizeEmail(username));
         if (user.isEmpty()) {
             throw new BuddyNotFoundException("Email " + username + " does not match any Buddy.");
         }
@@ -0,0 +1,34 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A single payment written with other payments of its transfer lane in one database transaction, and its outcome
+ * once the group is written: either the saved transaction, or the reason it was refused.
+ */
+@Getter
+@RequiredArgsConstructor
+public class GroupedTransfer {
+	private final Integer issuerId;
+	private final Integer payeeId;
+	private final String  description;
+	private final Money   amount;
+
+	@Setter(AccessLevel.PACKAGE)
+	private Transaction      transaction;
+	@Setter(AccessLevel.PACKAGE)
+	private RuntimeException failure;
+
+	/**
+	 * Forgets the outcome of a previous attempt.
+	 */
+	void reset() {
+		transaction = null;
+		failure     = null;
+	}
+}
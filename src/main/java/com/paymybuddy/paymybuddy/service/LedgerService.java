@@ -0,0 +1,154 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.BalanceSnapshot;
+import com.paymybuddy.paymybuddy.model.LedgerEntry;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.BalanceSnapshotRepository;
+import com.paymybuddy.paymybuddy.repository.LedgerEntryRepository;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes every money movement to the append-only ledger, as entries whose debits and credits balance.
+ * User balances are still updated in place to check overdrafts, the ledger keeps how each balance was reached.
+ * Balances are computed from the ledger as the user's latest snapshot plus the entries written after it.
+ */
+@Service
+public class LedgerService {
+	private final LedgerEntryRepository     ledgerEntryRepository;
+	private final BalanceSnapshotRepository balanceSnapshotRepository;
+	private final Clock                     clock;
+
+	public LedgerService(LedgerEntryRepository ledgerEntryRepository,
+			BalanceSnapshotRepository balanceSnapshotRepository, Clock clock) {
+		this.ledgerEntryRepository     = ledgerEntryRepository;
+		this.balanceSnapshotRepository = balanceSnapshotRepository;
+		this.clock                     = clock;
+	}
+
+	/**
+	 * Records money deposited from a user's bank account to their balance.
+	 *
+	 * @param user   User credited.
+	 * @param amount Amount deposited.
+	 */
+	@Transactional
+	public void recordDeposit(User user, BigDecimal amount) {
+		LocalDateTime date = LocalDateTime.now(clock);
+		ledgerEntryRepository.saveAll(List.of(
+				debit(LedgerEntry.Account.BANK, user.getId(), null, amount, date),
+				credit(LedgerEntry.Account.USER, user.getId(), null, amount, date)));
+	}
+
+	/**
+	 * Records money withdrawn from a user's balance to their bank account.
+	 *
+	 * @param user   User debited.
+	 * @param amount Amount withdrawn.
+	 */
+	@Transactional
+	public void recordWithdrawal(User user, BigDecimal amount) {
+		LocalDateTime date = LocalDateTime.now(clock);
+		ledgerEntryRepository.saveAll(List.of(
+				debit(LedgerEntry.Account.USER, user.getId(), null, amount, date),
+				credit(LedgerEntry.Account.BANK, user.getId(), null, amount, date)));
+	}
+
+	/**
+	 * Records the balances users were created with, as deposits from their bank accounts.
+	 *
+	 * @param users Saved users, users with a 0 balance are left out.
+	 */
+	@Transactional
+	public void recordOpeningBalances(List<User> users) {
+		LocalDateTime     date    = LocalDateTime.now(clock);
+		List<LedgerEntry> entries = new ArrayList<>();
+		for (User user : users) {
+			if (user.getBalance().signum() != 0) {
+				entries.add(debit(LedgerEntry.Account.BANK, user.getId(), null, user.getBalance(), date));
+				entries.add(credit(LedgerEntry.Account.USER, user.getId(), null, user.getBalance(), date));
+			}
+		}
+		ledgerEntryRepository.saveAll(entries);
+	}
+
+	/**
+	 * Records a saved transaction: the issuer pays the amount and the fee, the payee receives the amount and the
+	 * platform earns the fee.
+	 *
+	 * @param transaction Saved transaction.
+	 * @param fee         Fee paid by the issuer.
+	 */
+	@Transactional
+	public void recordTransfer(Transaction transaction, BigDecimal fee) {
+		ledgerEntryRepository.saveAll(transferEntries(transaction, fee));
+	}
+
+	/**
+	 * Records saved transactions of a batch, all entries being saved together.
+	 *
+	 * @param feesByTransaction Saved transactions, with the fee paid by the issuer for each.
+	 */
+	@Transactional
+	public void recordTransfers(Map<Transaction, BigDecimal> feesByTransaction) {
+		List<LedgerEntry> entries = new ArrayList<>();
+		feesByTransaction.forEach((transaction, fee) -> entries.addAll(transferEntries(transaction, fee)));
+		ledgerEntryRepository.saveAll(entries);
+	}
+
+	/**
+	 * Computes a user's balance from their latest snapshot and the ledger entries dated from its mark, so that only
+	 * the entries since the last snapshot are read.
+	 *
+	 * @param userId Id of the user.
+	 * @return the balance, 0 if the user has no entry.
+	 */
+	public BigDecimal getUserBalance(Integer userId) {
+		Optional<BalanceSnapshot> snapshot =
+				balanceSnapshotRepository.findFirstByUserIdOrderByEntriesBeforeDesc(userId);
+		BigDecimal balance = snapshot.map(BalanceSnapshot :: getBalance).orElse(BigDecimal.ZERO);
+		BigDecimal change = ledgerEntryRepository.sumByAccountAndUserIdSince(LedgerEntry.Account.USER, userId,
+				snapshot.map(BalanceSnapshot :: getEntriesBefore).orElse(BalanceSnapshot.NO_SNAPSHOT));
+		return change == null ? balance : balance.add(change);
+	}
+
+	/**
+	 * Computes the fees earned by the platform.
+	 *
+	 * @return the fees balance, 0 if no fee was paid.
+	 */
+	public BigDecimal getPlatformFees() {
+		BigDecimal fees = ledgerEntryRepository.sumByAccount(LedgerEntry.Account.PLATFORM_FEES);
+		return fees == null ? BigDecimal.ZERO : fees;
+	}
+
+	private static List<LedgerEntry> transferEntries(Transaction transaction, BigDecimal fee) {
+		Integer issuerId = transaction.getIssuer().getId();
+		return List.of(
+				debit(LedgerEntry.Account.USER, issuerId, transaction.getId(), transaction.getAmount().add(fee),
+						transaction.getDate()),
+				credit(LedgerEntry.Account.USER, transaction.getPayee().getId(), transaction.getId(),
+						transaction.getAmount(), transaction.getDate()),
+				credit(LedgerEntry.Account.PLATFORM_FEES, issuerId, transaction.getId(), fee,
+						transaction.getDate()));
+	}
+
+	private static LedgerEntry debit(LedgerEntry.Account account, Integer userId, Integer transactionId,
+			BigDecimal amount, LocalDateTime date) {
+		return new LedgerEntry(null, account, userId, transactionId, amount, BigDecimal.ZERO, date);
+	}
+
+	private static LedgerEntry credit(LedgerEntry.Account account, Integer userId, Integer transactionId,
+			BigDecimal amount, LocalDateTime date) {
+		return new LedgerEntry(null, account, userId, transactionId, BigDecimal.ZERO, amount, date);
+	}
+}
@@ -0,0 +1,69 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes rows streamed from the database as newline-delimited JSON, one object per line, as they are read.
+ * Listings written this way use the same memory whatever the number of rows.
+ */
+@Service
+public class NdjsonStreamingService {
+	/**
+	 * Content type of newline-delimited JSON.
+	 */
+	public static final String CONTENT_TYPE = "application/x-ndjson";
+
+	private final ObjectWriter        objectWriter;
+	private final TransactionTemplate transactionTemplate;
+
+	public NdjsonStreamingService(ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+		// flushed once at the end instead of after each row
+		this.objectWriter        = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+	}
+
+	/**
+	 * Opens the stream in a read-only transaction, then writes each row as a JSON line.
+	 *
+	 * @param rows query opening the stream of rows, closed once written
+	 * @param out  stream written to, left open
+	 * @return number of rows written.
+	 */
+	public long write(Supplier<? extends Stream<?>> rows, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		try (JsonGenerator json = objectWriter.getFactory().createGenerator(writer)) {
+			json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			json.setRootValueSeparator(null);
+			Long written = transactionTemplate.execute(status -> {
+				long count = 0;
+				try (Stream<?> stream = rows.get()) {
+					for (Iterator<?> iterator = stream.iterator(); iterator.hasNext(); count++) {
+						objectWriter.writeValue(json, iterator.next());
+						json.writeRaw('\n');
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return count;
+			});
+			json.flush();
+			return written == null ? 0 : written;
+		} catch (UncheckedIOException e) {
+			// usually the client going away before the end of the listing
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.HomePageViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.ProfilePageViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionPageViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransferPageViewModel;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reads what pages show into view models, each page in one read-only transaction.
+ * <p>
+ * The session is not kept open while views are rendered, so pages are given view models only, never entities,
+ * and the database connection is back in the pool before rendering starts.
+ */
+@Service
+public class PageModelService {
+	private final UserService         userService;
+	private final ConnectionService   connectionService;
+	private final TransactionService  transactionService;
+	private final TransactionTemplate transactionTemplate;
+
+	public PageModelService(UserService userService, ConnectionService connectionService,
+			TransactionService transactionService, PlatformTransactionManager transactionManager) {
+		this.userService         = userService;
+		this.connectionService   = connectionService;
+		this.transactionService  = transactionService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+	}
+
+	/**
+	 * @return the authenticated user with their most recent buddy and transaction.
+	 */
+	public HomePageViewModel getHomePage() {
+		return transactionTemplate.execute(status -> {
+			User user = userService.getAuthenticatedUser();
+			return new HomePageViewModel(UserService.userToViewModel(user),
+					connectionService.getMostRecentUserConnection(user).orElse(null),
+					transactionService.getMostRecentUserTransaction(user.getId()).orElse(null));
+		});
+	}
+
+	/**
+	 * @param page number of the page of buddies, from 1
+	 * @param size number of buddies per page
+	 * @return the authenticated user with a page of their buddies.
+	 */
+	public ProfilePageViewModel getProfilePage(int page, int size) {
+		return transactionTemplate.execute(status -> {
+			User user = userService.getAuthenticatedUser();
+			return new ProfilePageViewModel(UserService.userToViewModel(user),
+					connectionService.getPaginatedUserConnections(PageRequest.of(page - 1, size), user));
+		});
+	}
+
+	/**
+	 * @param page   number of the page of transactions, from 1, ignored when a cursor is given
+	 * @param size   number of transactions per page
+	 * @param cursor cursor returned with the previous transactions for infinite scroll, null for a numbered page
+	 * @return the authenticated user with their buddies and a page of their transactions.
+	 */
+	public TransferPageViewModel getTransferPage(int page, int size, String cursor) {
+		return transactionTemplate.execute(status -> {
+			User user = userService.getAuthenticatedUser();
+			if (cursor == null) {
+				Page<TransactionViewModel> pagedList = transactionService.getPaginatedUserTransactions(
+						PageRequest.of(page - 1, size), user.getId());
+				return new TransferPageViewModel(UserService.userToViewModel(user),
+						connectionService.getUserConnections(user), pagedList.getContent(), pagedList, null);
+			}
+			TransactionPageViewModel transactions = transactionService.getUserTransactionsBefore(user.getId(),
+					cursor, size);
+			return new TransferPageViewModel(UserService.userToViewModel(user),
+					connectionService.getUserConnections(user), transactions.getTransactions(), null,
+					transactions.getNext());
+		});
+	}
+}
@@ -0,0 +1,296 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.viewmodel.PaymentViewModel;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Runs payments on a fixed number of single-threaded lanes (paymybuddy.transfer.lanes), chosen by issuer id, and
+ * hands callers a future completed with the saved transaction.
+ * <p>
+ * Each account is debited by the thread of its lane only, in the order its payments were submitted, so payments
+ * from one account never wait for each other's row locks nor retry on each other's updates. A payment to an account
+ * of another lane is run whole by the issuer's lane, in one database transaction: the payee is only credited, which
+ * adds to the balance in one statement and commutes with whatever the payee's lane does. User rows are updated in
+ * ascending id order by {@link TransactionService}, so crossing payments between two lanes wait for each other
+ * instead of deadlocking. Remaining conflicts are retried by {@link TransferExecutor}.
+ * <p>
+ * Single payments queued one after the other on a lane are committed together: the lane takes up to
+ * paymybuddy.transfer.group.max-size of them, waiting at most paymybuddy.transfer.group.max-wait-micros for more,
+ * and writes them in one database transaction, so that one commit is paid for the whole group. A refused payment
+ * fails alone, see {@link TransferExecutor#transferGroup}. Batches of payments are already written in one
+ * transaction and end the group before them.
+ */
+@Component
+@Slf4j
+public class PartitionedTransferExecutor {
+	private final TransferExecutor    transferExecutor;
+	private final int                 maxGroupSize;
+	private final long                maxGroupWaitNanos;
+	private final DistributionSummary groupSize;
+	private final Timer               groupWait;
+	private final Lane[]              lanes;
+
+	public PartitionedTransferExecutor(TransferExecutor transferExecutor, MeterRegistry meterRegistry,
+			@Value("${paymybuddy.transfer.lanes:4}") int laneCount,
+			@Value("${paymybuddy.transfer.group.max-size:256}") int maxGroupSize,
+			@Value("${paymybuddy.transfer.group.max-wait-micros:2000}") long maxGroupWaitMicros) {
+		if (laneCount < 1) {
+			throw new IllegalArgumentException("paymybuddy.transfer.lanes must be at least 1, was " + laneCount + ".");
+		}
+		if (maxGroupSize < 1 || maxGroupWaitMicros < 0) {
+			throw new IllegalArgumentException("paymybuddy.transfer.group.max-size must be at least 1 and "
+					+ "paymybuddy.transfer.group.max-wait-micros at least 0.");
+		}
+		this.transferExecutor  = transferExecutor;
+		this.maxGroupSize      = maxGroupSize;
+		this.maxGroupWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxGroupWaitMicros);
+		this.groupSize = DistributionSummary.builder("transfer.group.size")
+				.description("Single payments committed together in one database transaction")
+				.register(meterRegistry);
+		this.groupWait = Timer.builder("transfer.group.wait")
+				.description("Time a single payment waited on its lane before its group was written")
+				.register(meterRegistry);
+		this.lanes = new Lane[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			Lane lane = new Lane("transfer-lane-" + i);
+			Gauge.builder("transfer.lane.pending", lane.pending, AtomicInteger :: get)
+					.tag("lane", String.valueOf(i))
+					.description("Payments waiting for their lane")
+					.register(meterRegistry);
+			lanes[i] = lane;
+			lane.thread.start();
+		}
+	}
+
+	/**
+	 * Transfers money from a user to one of their buddies, on the issuer's lane.
+	 *
+	 * @param issuerId    id of the user paying
+	 * @param payeeId     id of the buddy paid
+	 * @param description transaction description
+	 * @param amount      transaction amount, without fee
+	 * @return the saved transaction, or the reason the payment failed.
+	 */
+	public CompletableFuture<Transaction> transfer(Integer issuerId, Integer payeeId, String description,
+			Money amount) {
+		PendingTransfer transfer = new PendingTransfer(new GroupedTransfer(issuerId, payeeId, description, amount));
+		lanes[laneOf(issuerId)].submit(transfer);
+		return transfer.result;
+	}
+
+	/**
+	 * Pays a batch of payments from a user to their buddies, all or none of them, on the issuer's lane.
+	 *
+	 * @param issuerId id of the user paying
+	 * @param payments payments to make
+	 * @return saved transactions in the order of the payments, or the reason the batch failed.
+	 */
+	public CompletableFuture<List<Transaction>> transferBatch(Integer issuerId, List<PaymentViewModel> payments) {
+		PendingBatch batch = new PendingBatch(() -> transferExecutor.transferBatch(issuerId, payments));
+		lanes[laneOf(issuerId)].submit(batch);
+		return batch.result;
+	}
+
+	/**
+	 * @return index of the lane running the payments of an account.
+	 */
+	int laneOf(Integer accountId) {
+		return Math.floorMod(accountId, lanes.length);
+	}
+
+	/**
+	 * Stops taking payments, then lets each lane finish the payments already submitted.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		for (Lane lane : lanes) {
+			lane.running = false;
+			LockSupport.unpark(lane.thread);
+		}
+		for (Lane lane : lanes) {
+			lane.thread.join();
+			// payments submitted while the lane was stopping
+			lane.drain();
+			lane.reject();
+		}
+		log.info("Transfer lanes stopped.");
+	}
+
+	/**
+	 * A payment waiting on its lane.
+	 */
+	private abstract static class Pending {
+		final long submittedNanos = System.nanoTime();
+	}
+
+	private static final class PendingTransfer extends Pending {
+		final GroupedTransfer                transfer;
+		final CompletableFuture<Transaction> result = new CompletableFuture<>();
+
+		PendingTransfer(GroupedTransfer transfer) {
+			this.transfer = transfer;
+		}
+
+		void complete() {
+			if (transfer.getFailure() != null) {
+				result.completeExceptionally(transfer.getFailure());
+			} else {
+				result.complete(transfer.getTransaction());
+			}
+		}
+	}
+
+	private static final class PendingBatch extends Pending {
+		final Supplier<List<Transaction>>          payments;
+		final CompletableFuture<List<Transaction>> result = new CompletableFuture<>();
+
+		PendingBatch(Supplier<List<Transaction>> payments) {
+			this.payments = payments;
+		}
+
+		void run() {
+			try {
+				result.complete(payments.get());
+			} catch (Throwable e) {
+				// errors too, so that neither this caller nor the next ones of the lane wait forever
+				log.error("Batch of payments failed on its transfer lane.", e);
+				result.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * A lane thread and its payments. Any thread adds payments to a lock-free queue and wakes the lane thread up,
+	 * the lane thread writes them in groups and sleeps when there are none left.
+	 */
+	private final class Lane implements Runnable {
+		private final Queue<Pending> payments = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger  pending  = new AtomicInteger();
+		private final Thread         thread;
+		private volatile boolean     running  = true;
+
+		Lane(String name) {
+			this.thread = new Thread(this, name);
+			this.thread.setDaemon(true);
+		}
+
+		void submit(Pending payment) {
+			if (!running) {
+				throw new RejectedExecutionException("Transfer lanes are stopped.");
+			}
+			pending.incrementAndGet();
+			payments.offer(payment);
+			if (!running && payments.remove(payment)) {
+				// the lane stopped meanwhile and may not see this payment anymore
+				pending.decrementAndGet();
+				throw new RejectedExecutionException("Transfer lanes are stopped.");
+			}
+			// a wake-up given before the lane thread parks is kept, so that it does not sleep on a payment
+			LockSupport.unpark(thread);
+		}
+
+		@Override
+		public void run() {
+			while (running || !payments.isEmpty()) {
+				if (!drain()) {
+					LockSupport.park(this);
+				}
+			}
+		}
+
+		/**
+		 * Writes the payments waiting in the queue.
+		 *
+		 * @return false if there were none.
+		 */
+		boolean drain() {
+			Pending next = payments.poll();
+			if (next == null) {
+				return false;
+			}
+			while (next != null) {
+				if (next instanceof PendingBatch batch) {
+					pending.decrementAndGet();
+					batch.run();
+					next = payments.poll();
+				} else {
+					next = writeGroup((PendingTransfer) next);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Fails the payments left once the lane is stopped, which no thread would write anymore.
+		 */
+		void reject() {
+			for (Pending next = payments.poll(); next != null; next = payments.poll()) {
+				pending.decrementAndGet();
+				RejectedExecutionException stopped = new RejectedExecutionException("Transfer lanes are stopped.");
+				if (next instanceof PendingBatch batch) {
+					batch.result.completeExceptionally(stopped);
+				} else {
+					((PendingTransfer) next).result.completeExceptionally(stopped);
+				}
+			}
+		}
+
+		/**
+		 * Collects single payments following the first one, until the group is full, the wait is over or a batch
+		 * comes, then writes them in one database transaction.
+		 *
+		 * @return the payment that ended the group, if any.
+		 */
+		private Pending writeGroup(PendingTransfer first) {
+			List<PendingTransfer> group    = new ArrayList<>();
+			long                  deadline = System.nanoTime() + maxGroupWaitNanos;
+			Pending               next     = first;
+			while (next instanceof PendingTransfer transfer && group.size() < maxGroupSize) {
+				group.add(transfer);
+				next = payments.poll();
+				while (next == null && group.size() < maxGroupSize && running) {
+					long wait = deadline - System.nanoTime();
+					if (wait <= 0) {
+						break;
+					}
+					LockSupport.parkNanos(this, wait);
+					next = payments.poll();
+				}
+			}
+			pending.addAndGet(-group.size());
+
+			try {
+				long startNanos = System.nanoTime();
+				group.forEach(transfer -> groupWait.record(startNanos - transfer.submittedNanos, TimeUnit.NANOSECONDS));
+				groupSize.record(group.size());
+				transferExecutor.transferGroup(group.stream().map(transfer -> transfer.transfer).toList());
+				group.forEach(PendingTransfer :: complete);
+			} catch (Throwable e) {
+				// errors too, so that neither these callers nor the next ones of the lane wait forever
+				log.error("Group of " + group.size() + " payments failed on its transfer lane.", e);
+				group.forEach(transfer -> transfer.result.completeExceptionally(e));
+			}
+			return next;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.viewmodel.StatementLineViewModel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Writes a user's transaction history as a statement, one line per transaction, most recent first.
+ * <p>
+ * Transactions are read a page at a time and written as they are read, so memory use does not depend on the length
+ * of the history.
+ */
+@Service
+@Slf4j
+public class TransactionExportService {
+	static final String CSV_HEADER = "id,date,issuer,payee,amount,description";
+
+	/**
+	 * Statement formats.
+	 */
+	@Getter
+	public enum Format {
+		CSV("text/csv", "csv"),
+		/**
+		 * One JSON object per line.
+		 */
+		NDJSON(NdjsonStreamingService.CONTENT_TYPE, "ndjson");
+
+		private final String contentType;
+		private final String extension;
+
+		Format(String contentType, String extension) {
+			this.contentType = contentType;
+			this.extension   = extension;
+		}
+	}
+
+	private final TransactionService     transactionService;
+	private final NdjsonStreamingService ndjsonStreamingService;
+	private final TransactionTemplate    transactionTemplate;
+
+	public TransactionExportService(TransactionService transactionService,
+			NdjsonStreamingService ndjsonStreamingService, PlatformTransactionManager transactionManager) {
+		this.transactionService     = transactionService;
+		this.ndjsonStreamingService = ndjsonStreamingService;
+		this.transactionTemplate    = new TransactionTemplate(transactionManager);
+		this.transactionTemplate.setReadOnly(true);
+	}
+
+	/**
+	 * Writes all transactions involving a user.
+	 *
+	 * @param userId id of the user, either issuer or payee
+	 * @param format statement format
+	 * @param out    stream written to, left open
+	 * @return number of transactions written.
+	 */
+	public long export(Integer userId, Format format, OutputStream out) throws IOException {
+		long written = format == Format.CSV ? exportCsv(userId, out) : ndjsonStreamingService.write(
+				() -> transactionService.streamUserTransactions(userId).map(StatementLineViewModel :: of), out);
+		log.info("Exported " + written + " transactions of user " + userId + " as " + format + ".");
+		return written;
+	}
+
+	private long exportCsv(Integer userId, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		try {
+			Long written = transactionTemplate.execute(status -> {
+				try (Stream<StatementLineViewModel> lines =
+						     transactionService.streamUserTransactions(userId).map(StatementLineViewModel :: of)) {
+					return writeCsv(lines, writer);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			writer.flush();
+			return written == null ? 0 : written;
+		} catch (UncheckedIOException e) {
+			// usually the client going away before the end of the statement
+			throw e.getCause();
+		}
+	}
+
+	private static long writeCsv(Stream<StatementLineViewModel> lines, Writer writer) throws IOException {
+		writer.write(CSV_HEADER);
+		writer.write('\n');
+		long written = 0;
+		for (StatementLineViewModel line : (Iterable<StatementLineViewModel>) lines :: iterator) {
+			writer.write(line.getId() + "," + line.getDate() + "," + csvValue(line.getIssuer()) + ","
+					+ csvValue(line.getPayee()) + "," + line.getAmount().toPlainString() + ","
+					+ csvValue(line.getDescription()));
+			writer.write('\n');
+			written++;
+		}
+		return written;
+	}
+
+	/**
+	 * Quotes a CSV value containing a separator, a quote or a line break.
+	 */
+	static String csvValue(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
@@ -1,30 +1,48 @@
 package com.paymybuddy.paymybuddy.service;
 
-import com.paymybuddy.paymybuddy.constants.Fee;
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
 import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
 import com.paymybuddy.paymybuddy.exceptions.InvalidAmountException;
+import com.paymybuddy.paymybuddy.exceptions.InvalidPaymentBatchException;
 import com.paymybuddy.paymybuddy.exceptions.InvalidPayeeException;
+import com.paymybuddy.paymybuddy.model.Money;
 import com.paymybuddy.paymybuddy.model.Transaction;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.PaymentViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionCursor;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionPageViewModel;
 import com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel;
 import com.paymybuddy.paymybuddy.repository.TransactionRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 public class TransactionService {
+	/**
+	 * Maximum number of payments in one batch.
+	 */
+	public static final int MAX_BATCH_PAYMENTS = 50;
+
+	/**
+	 * Number of transactions read at a time by streamed listings.
+	 */
+	static final int STREAMED_PAGE_SIZE = Integer.parseInt(Pagination.FETCH_SIZE);
+
 	@Autowired
 	TransactionRepository transactionRepository;
 	@Autowired
@@ -32,7 +50,7 @@ public class TransactionService {
 	@Autowired
 	UserService           userService;
 	@Autowired
-	PaginationService paginationService;
+	LedgerService         ledgerService;
 	@Autowired
 	Clock                 clock;
 
@@ -40,93 +58,242 @@ public class TransactionService {
 	 * Saves a new transaction.
 	 */
 	@Transactional
-	public Transaction createTransaction(User issuer, User payee, String description, double amount) {
-		// Check that amount is not negative nor 0
-		if (amount < 0) {
-			String errorMessage = "Transaction amount can not be negative.";
+	public Transaction createTransaction(User issuer, User payee, String description, Money amount) {
+		checkTransfer(issuer, payee, amount, issuer.getBalance());
+		// Calculate fee and total amount
+		Money      fee           = amount.fee();
+		BigDecimal amountWithFee = amount.plus(fee).toBigDecimal();
+
+		// Withdraw amount with applied fee from issuer's balance, if it still covers it when updated, and credit
+		// payee. Rows are updated in ascending user id order, so that crossing transfers lock them in the same order
+		BigDecimal transactionAmount = amount.toBigDecimal();
+		if (issuer.getId() < payee.getId()) {
+			userService.debitBalance(issuer, amountWithFee);
+			userService.creditBalance(payee, transactionAmount);
+		} else {
+			userService.creditBalance(payee, transactionAmount);
+			userService.debitBalance(issuer, amountWithFee);
+		}
+		// Update transaction with all information before saving
+		Transaction transaction = new Transaction();
+		transaction.setIssuer(issuer);
+		transaction.setPayee(payee);
+		transaction.setAmount(transactionAmount);
+		transaction.setDate(LocalDateTime.now(clock));
+		transaction.setDescription(description);
+		// Users' transaction lists are left alone, so that their histories are never loaded by a payment
+		transaction = transactionRepository.save(transaction);
+		// Record the movement, fee included, in the ledger
+		ledgerService.recordTransfer(transaction, fee.toBigDecimal());
+		return transaction;
+	}
+
+	/**
+	 * Saves a batch of payments from one issuer, all or none of them.
+	 * Payees are read in one query and their buddy status from the buddy graph cache. The issuer is debited once
+	 * with all amounts and fees, each payee is credited once with all their amounts, in ascending id order.
+	 *
+	 * @param issuer   User paying.
+	 * @param payments Payments to make, each to a buddy of the issuer.
+	 * @return saved transactions, in the order of the payments.
+	 */
+	@Transactional
+	public List<Transaction> createTransactions(User issuer, List<PaymentViewModel> payments) {
+		if (payments == null || payments.isEmpty() || payments.size() > MAX_BATCH_PAYMENTS) {
+			String errorMessage = "A batch must hold between 1 and " + MAX_BATCH_PAYMENTS + " payments.";
 			log.error(errorMessage);
-			throw new InvalidAmountException(errorMessage);
+			throw new InvalidPaymentBatchException(errorMessage);
 		}
-		if (amount == 0) {
-			String errorMessage = "Transaction amount must be more than 0.";
+		// Emails are stored normalized, whatever the case the issuer typed them with
+		Map<String, User> payees = userService.getUsersByEmails(payments.stream()
+				.map(payment -> UserService.normalizeEmail(payment.getPayeeEmail())).collect(Collectors.toSet()));
+
+		// Check every payment and sum what each user pays or receives
+		Money                        totalWithFee = Money.ZERO;
+		Map<Integer, Money>          credits      = new TreeMap<>();
+		Map<Transaction, BigDecimal> fees         = new LinkedHashMap<>();
+		LocalDateTime                date         = LocalDateTime.now(clock);
+		for (PaymentViewModel payment : payments) {
+			Money amount = payment.getAmount();
+			if (amount == null || !amount.isPositive()) {
+				String errorMessage = "Transaction amount must be more than 0.";
+				log.error(errorMessage);
+				throw new InvalidAmountException(errorMessage);
+			}
+			User payee = payees.get(UserService.normalizeEmail(payment.getPayeeEmail()));
+			if (payee == null) {
+				String errorMessage = "The buddy with email (" + payment.getPayeeEmail() + ") does not exist.";
+				log.error(errorMessage);
+				throw new BuddyNotFoundException(errorMessage);
+			}
+			if (!connectionService.existsConnectionBetween(issuer, payee)) {
+				String errorMessage = "The payee " + payment.getPayeeEmail() + " is not a buddy from issuer.";
+				log.error(errorMessage);
+				throw new InvalidPayeeException(errorMessage);
+			}
+			Money fee = amount.fee();
+			totalWithFee = totalWithFee.plus(amount).plus(fee);
+			credits.merge(payee.getId(), amount, Money :: plus);
+
+			Transaction transaction = new Transaction(null, issuer, payee, date, amount.toBigDecimal(),
+					payment.getDescription());
+			fees.put(transaction, fee.toBigDecimal());
+		}
+		if (issuer.getBalance().compareTo(totalWithFee.toBigDecimal()) < 0) {
+			String errorMessage = "Issuer has insufficient balance to make these transfers.";
 			log.error(errorMessage);
-			throw new InvalidAmountException(errorMessage);
+			throw new InsufficientBalanceException(errorMessage);
 		}
-		// Calculate fee and total amount
-		BigDecimal amountWithFee = calculateAmountWithFee(amount).get("amountWithFee");
+		// Debit the issuer once and credit each payee once, in ascending user id order like single transfers
+		Map<Integer, User> payeesById = new HashMap<>();
+		payees.values().forEach(payee -> payeesById.put(payee.getId(), payee));
+		boolean debited = false;
+		for (Map.Entry<Integer, Money> credit : credits.entrySet()) {
+			if (!debited && issuer.getId() < credit.getKey()) {
+				userService.debitBalance(issuer, totalWithFee.toBigDecimal());
+				debited = true;
+			}
+			userService.creditBalance(payeesById.get(credit.getKey()), credit.getValue().toBigDecimal());
+		}
+		if (!debited) {
+			userService.debitBalance(issuer, totalWithFee.toBigDecimal());
+		}
+
+		List<Transaction> transactions = new ArrayList<>(fees.keySet());
+		transactionRepository.saveAll(transactions);
+		ledgerService.recordTransfers(fees);
+		log.info("Saved a batch of " + transactions.size() + " transactions from " + issuer.getEmail() + ".");
+		return transactions;
+	}
+
+	/**
+	 * Saves a group of single payments, from any issuers, in one transaction.
+	 * Each payment is checked on its own: a refused payment is given its reason and left out, the others are saved.
+	 * Balances are then moved once per user, in ascending id order, and transactions and ledger entries are inserted
+	 * together. The group fails as a whole only if a balance update fails, such as a balance withdrawn meanwhile.
+	 *
+	 * @param transfers   Payments to make, each given its saved transaction or its failure.
+	 * @param lockedUsers Users already locked by the caller, by id, others being read without lock.
+	 */
+	@Transactional
+	public void createTransactionGroup(List<GroupedTransfer> transfers, Map<Integer, User> lockedUsers) {
+		Map<Integer, User>           users   = new HashMap<>(lockedUsers);
+		Map<Integer, Money>          debits  = new TreeMap<>();
+		Map<Integer, Money>          credits = new TreeMap<>();
+		Map<Transaction, BigDecimal> fees    = new LinkedHashMap<>();
+		LocalDateTime                date    = LocalDateTime.now(clock);
+		for (GroupedTransfer transfer : transfers) {
+			transfer.reset();
+			try {
+				// Refuse a missing or invalid amount before any user is read for it
+				Money amount = transfer.getAmount();
+				checkAmount(amount);
+				User issuer = users.computeIfAbsent(transfer.getIssuerId(), this :: getGroupedUser);
+				User payee  = users.computeIfAbsent(transfer.getPayeeId(), this :: getGroupedUser);
+				// Issuer's earlier payments in the group are not debited yet, but already spent
+				BigDecimal available = issuer.getBalance()
+						.subtract(debits.getOrDefault(issuer.getId(), Money.ZERO).toBigDecimal());
+				checkTransfer(issuer, payee, amount, available);
 
+				Money fee = amount.fee();
+				debits.merge(issuer.getId(), amount.plus(fee), Money :: plus);
+				credits.merge(payee.getId(), amount, Money :: plus);
+				Transaction transaction = new Transaction(null, issuer, payee, date, amount.toBigDecimal(),
+						transfer.getDescription());
+				fees.put(transaction, fee.toBigDecimal());
+				transfer.setTransaction(transaction);
+			} catch (BuddyNotFoundException | InvalidAmountException | InsufficientBalanceException
+					| InvalidPayeeException e) {
+				transfer.setFailure(e);
+			}
+		}
+		if (fees.isEmpty()) {
+			return;
+		}
+		// Move each balance once, in ascending user id order, so that groups of other lanes lock rows in the same order
+		Set<Integer> ids = new TreeSet<>(credits.keySet());
+		ids.addAll(debits.keySet());
+		for (Integer id : ids) {
+			if (credits.containsKey(id)) {
+				userService.creditBalance(users.get(id), credits.get(id).toBigDecimal());
+			}
+			if (debits.containsKey(id)) {
+				userService.debitBalance(users.get(id), debits.get(id).toBigDecimal());
+			}
+		}
+
+		transactionRepository.saveAll(new ArrayList<>(fees.keySet()));
+		ledgerService.recordTransfers(fees);
+		log.info("Saved a group of " + fees.size() + " transactions, " + (transfers.size() - fees.size())
+				+ " refused.");
+	}
+
+	/**
+	 * Checks a single payment before any balance is moved.
+	 *
+	 * @param available Part of issuer's balance the payment can use.
+	 */
+	private void checkTransfer(User issuer, User payee, Money amount, BigDecimal available) {
+		checkAmount(amount);
 		// Check that issuer has enough money for this transaction
-		if (issuer.getBalance().compareTo(amountWithFee) < 0) {
+		if (available.compareTo(amount.withFee().toBigDecimal()) < 0) {
 			String errorMessage = "Issuer has insufficient balance to make this transfer.";
 			log.error(errorMessage);
 			throw new InsufficientBalanceException(errorMessage);
 		}
 		// Check that buddy is making a transaction with a connection
-		if (!connectionService.getUserConnections(issuer).contains(UserService.userToViewModel(payee))) {
+		if (!connectionService.existsConnectionBetween(issuer, payee)) {
 			String errorMessage = "The payee is not a buddy from issuer.";
 			log.error(errorMessage);
 			throw new InvalidPayeeException(errorMessage);
 		}
-		// Withdraw amount with applied fee from issuer's balance
-		issuer.setBalance(issuer.getBalance().subtract(amountWithFee));
-		// Credit payee
-		BigDecimal transactionAmount = new BigDecimal(Double.toString(amount))
-				.setScale(Fee.SCALE, RoundingMode.HALF_UP);
-		payee.setBalance(payee.getBalance()
-				.add(BigDecimal.valueOf(amount)
-						.setScale(Fee.SCALE, RoundingMode.HALF_UP)));
-		// Update transaction with all information before saving
-		Transaction transaction = new Transaction();
-		transaction.setIssuer(issuer);
-		transaction.setPayee(payee);
-		transaction.setAmount(transactionAmount);
-		transaction.setDate(LocalDateTime.now(clock));
-		transaction.setDescription(description);
-
-		issuer.getInitiatedTransactions().add(transaction);
-		payee.getReceivedTransactions().add(transaction);
-
-		return transactionRepository.save(transaction);
 	}
 
 	/**
-	 * Calculates fee information for a given amount.
-	 *
-	 * @param amount Transaction amount
-	 * @return a HashMap with transaction amount, calculated fee, and amount with fee information
+	 * Checks that a payment amount is given, and neither negative nor 0.
 	 */
-	public Map<String, BigDecimal> calculateAmountWithFee(double amount) {
-		// Create the Map
-		HashMap<String, BigDecimal> amountAndFee = new HashMap<>();
-		BigDecimal bdAmount = new BigDecimal(Double.toString(amount))
-				.setScale(Fee.SCALE, RoundingMode.HALF_UP);
-		BigDecimal bdFee = new BigDecimal(Double.toString(amount * Fee.TRANSACTION_FEE))
-				.setScale(Fee.SCALE, RoundingMode.HALF_UP);
-		amountAndFee.put("amount", bdAmount);
-		amountAndFee.put("fee", bdFee);
-		amountAndFee.put("amountWithFee", bdAmount.add(bdFee));
-		return amountAndFee;
+	private void checkAmount(Money amount) {
+		if (amount == null) {
+			String errorMessage = "Transaction amount is required.";
+			log.error(errorMessage);
+			throw new InvalidAmountException(errorMessage);
+		}
+		// Check that amount is not negative nor 0
+		if (amount.isNegative()) {
+			String errorMessage = "Transaction amount can not be negative.";
+			log.error(errorMessage);
+			throw new InvalidAmountException(errorMessage);
+		}
+		if (!amount.isPositive()) {
+			String errorMessage = "Transaction amount must be more than 0.";
+			log.error(errorMessage);
+			throw new InvalidAmountException(errorMessage);
+		}
+	}
+
+	private User getGroupedUser(Integer id) {
+		if (id == null) {
+			throw new BuddyNotFoundException("A grouped transfer has no issuer or payee.");
+		}
+		return userService.getUserById(id)
+				.orElseThrow(() -> new BuddyNotFoundException("User " + id + " does not exist."));
 	}
 
 	/**
-	 * Lists all connections in data base
+	 * Streams one page of transactions in data base, in ascending id order.
 	 *
-	 * @return a list of connections
+	 * @param afterId id of the last transaction of the previous page, 0 for the first page
+	 * @param size    number of transactions wanted, at most {@link Pagination#MAX_STREAMED_SIZE}
+	 * @return transactions, to be read and closed within a transaction
 	 */
-	public List<TransactionViewModel> getTransactions() {
-		Iterable<Transaction>      transactions          = transactionRepository.findAll();
-		List<TransactionViewModel> transactionViewModels = new ArrayList<>();
-		// extract info from user to user view model
-		transactions.forEach(transaction -> transactionViewModels.add(transactionToViewModel(transaction)));
-		return transactionViewModels;
+	public Stream<TransactionViewModel> streamTransactions(int afterId, int size) {
+		int limit = Math.min(Math.max(size, 1), Pagination.MAX_STREAMED_SIZE);
+		return transactionRepository.streamViewModelsAfter(afterId, PageRequest.of(0, limit));
 	}
 
 	public Optional<TransactionViewModel> getTransactionById(Integer id) {
-		if (transactionRepository.findById(id).isPresent()) {
-			return Optional.of(transactionToViewModel(transactionRepository.findById(id).get()));
-		} else {
-			return Optional.empty();
-		}
+		// Read with its issuer and payee, which are lazy and could not be loaded once the query is over
+		return getTransactionsByIds(List.of(id)).stream().findFirst();
 	}
 
 	/**
@@ -136,18 +303,14 @@ public class TransactionService {
 	 * @return a list of transactions
 	 */
 	public List<TransactionViewModel> getUserTransactions(Integer id) {
-		if (userService.getUserById(id).isEmpty()) {
+		Optional<User> user = userService.getUserById(id);
+		if (user.isEmpty()) {
 			log.error("User does not exist.");
 			throw new BuddyNotFoundException("User does not exist.");
 		}
-		User                       user         = userService.getUserById(id).get();
-		List<TransactionViewModel> transactions = new ArrayList<>();
-		// Get all transactions where user is involved
-		List<Transaction> transactionsWhereUserIsInvolved = transactionRepository
-				.findByIssuerOrPayee(user, user);
-		log.debug("Found transactions involving " + user.getEmail() + ":\n" + transactionsWhereUserIsInvolved);
-		transactionsWhereUserIsInvolved.forEach(transaction -> transactions.add(transactionToViewModel(transaction)));
-		log.info("Transactions with " + user.getEmail() + ":\n" + transactions);
+		// Read by pages of ids, each side of the history seeking its own index
+		List<TransactionViewModel> transactions = streamUserTransactions(id).toList();
+		log.info("Found " + transactions.size() + " transactions with " + user.get().getEmail() + ".");
 		return transactions;
 	}
 
@@ -158,10 +321,83 @@ public class TransactionService {
 	 * @param id       Id of connected user.
 	 * @return a paginated list of transactions.
 	 */
-	public Page<?> getPaginatedUserTransactions(Pageable pageable, Integer id) {
-		// Get raw list of transactions
-		List<TransactionViewModel> transactions = getUserTransactions(id);
-		return paginationService.getPaginatedList(pageable, transactions);
+	public Page<TransactionViewModel> getPaginatedUserTransactions(Pageable pageable, Integer id) {
+		// Only the requested page is fetched and mapped, most recent first
+		Page<Integer> ids = transactionRepository.findPageIdsByUserId(id, pageable);
+		return new PageImpl<>(getTransactionsByIds(ids.getContent()), pageable, ids.getTotalElements());
+	}
+
+	/**
+	 * Returns the user's transactions following a cursor, most recent first.
+	 * Transactions are sought from the cursor position so that deep pages cost as much as the first one.
+	 *
+	 * @param id     Id of the user.
+	 * @param cursor Cursor returned with the previous transactions, null or blank for the most recent ones.
+	 * @param size   Number of transactions wanted.
+	 * @return the transactions and the cursor to the following ones.
+	 */
+	public TransactionPageViewModel getUserTransactionsBefore(Integer id, String cursor, int size) {
+		int limit = Math.min(Math.max(size, 1), Pagination.MAX_SIZE);
+		// Read one more transaction than wanted to know if there is a following page
+		List<Integer> ids;
+		if (cursor == null || cursor.isBlank()) {
+			ids = transactionRepository.findFirstIdsByUserId(id, limit + 1);
+		} else {
+			TransactionCursor position = TransactionCursor.decode(cursor);
+			ids = transactionRepository.findIdsByUserIdBefore(id, position.getDate(), position.getId(), limit + 1);
+		}
+		boolean                    hasNext      = ids.size() > limit;
+		List<TransactionViewModel> transactions = getTransactionsByIds(hasNext ? ids.subList(0, limit) : ids);
+		String next = null;
+		if (hasNext) {
+			TransactionViewModel last = transactions.get(limit - 1);
+			next = new TransactionCursor(last.getDate(), last.getId()).encode();
+		}
+		return new TransactionPageViewModel(transactions, next);
+	}
+
+	/**
+	 * Streams all user's transactions, most recent first. Transactions are read a page at a time, each page sought
+	 * from the last transaction of the previous one, so that memory use does not depend on the length of the history.
+	 *
+	 * @param id Id of the user.
+	 * @return the transactions, read as the stream is consumed.
+	 */
+	public Stream<TransactionViewModel> streamUserTransactions(Integer id) {
+		return Stream.iterate(getTransactionsByIds(transactionRepository.findFirstIdsByUserId(id, STREAMED_PAGE_SIZE)),
+						page -> !page.isEmpty(),
+						page -> {
+							if (page.size() < STREAMED_PAGE_SIZE) {
+								return Collections.emptyList();
+							}
+							TransactionViewModel last = page.get(page.size() - 1);
+							return getTransactionsByIds(transactionRepository.findIdsByUserIdBefore(id, last.getDate(),
+									last.getId(), STREAMED_PAGE_SIZE));
+						})
+				.flatMap(List :: stream);
+	}
+
+	/**
+	 * Returns the most recent transaction of a user, issued or received.
+	 *
+	 * @param id Id of the user.
+	 * @return the most recent transaction, or an empty Optional if the user has no transaction
+	 */
+	public Optional<TransactionViewModel> getMostRecentUserTransaction(Integer id) {
+		return getTransactionsByIds(transactionRepository.findFirstIdsByUserId(id, 1)).stream().findFirst();
+	}
+
+	/**
+	 * Reads transactions with their issuer and payee in one statement.
+	 *
+	 * @param ids ids of the transactions
+	 * @return transactions, most recent first
+	 */
+	private List<TransactionViewModel> getTransactionsByIds(List<Integer> ids) {
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return transactionRepository.findViewModelsByIdIn(ids);
 	}
 
 	public static TransactionViewModel transactionToViewModel(Transaction transaction) {
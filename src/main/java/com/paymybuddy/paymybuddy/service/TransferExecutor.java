@@ -0,0 +1,192 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.PaymentViewModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Runs transfers in their own transaction and retries them when they lose a concurrency conflict, such as a deadlock
+ * or a lock wait timeout between two opposite payments.
+ * Each attempt reads issuer and payee again, so the transfer is re-applied on fresh balances.
+ * <p>
+ * Balances are moved by atomic updates that check the balance but not the user's version, see
+ * {@link com.paymybuddy.paymybuddy.repository.UserRepository#debitBalance}: payments from or to one user commute, so
+ * they never fail on each other's version. The version only refuses stale copies of a user saved over a newer balance.
+ * <p>
+ * With the ORDERED_LOCKING mode (paymybuddy.transfer.mode), both users are locked in ascending id order before
+ * any balance changes, so that crossing transfers wait for each other instead of deadlocking.
+ */
+@Component
+@Slf4j
+public class TransferExecutor {
+	/**
+	 * Number of attempts before the conflict is reported to the caller.
+	 */
+	static final int MAX_ATTEMPTS = 5;
+
+	private static final long INITIAL_BACKOFF_MILLIS = 5;
+	private static final long MAX_BACKOFF_MILLIS     = 100;
+
+	/**
+	 * How issuer and payee are read by each attempt.
+	 */
+	public enum TransferMode {
+		/**
+		 * Users are read without lock, conflicts on row locks are reported by the database and retried.
+		 */
+		UNLOCKED,
+		/**
+		 * Users are locked in ascending id order before their balances change.
+		 */
+		ORDERED_LOCKING
+	}
+
+	private final TransactionService  transactionService;
+	private final UserService         userService;
+	private final TransactionTemplate transactionTemplate;
+	private final TransferMode        mode;
+	private final Counter             retries;
+
+	public TransferExecutor(TransactionService transactionService, UserService userService,
+			PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+			@Value("${paymybuddy.transfer.mode:UNLOCKED}") TransferMode mode) {
+		this.transactionService  = transactionService;
+		this.userService         = userService;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.mode                = mode;
+		this.retries = Counter.builder("transfer.retries")
+				.description("Transfers attempted again after a concurrency conflict")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Transfers money from a user to one of their buddies.
+	 *
+	 * @param issuerId    id of the user paying
+	 * @param payeeId     id of the buddy paid
+	 * @param description transaction description
+	 * @param amount      transaction amount, without fee
+	 * @return saved transaction
+	 */
+	public Transaction transfer(Integer issuerId, Integer payeeId, String description, Money amount) {
+		return retry("Transfer from user " + issuerId, () -> createTransaction(issuerId, payeeId, description, amount));
+	}
+
+	/**
+	 * Pays a batch of payments from a user to their buddies, all or none of them.
+	 * The issuer is read again on each attempt, payees are read by email by the batch itself.
+	 *
+	 * @param issuerId id of the user paying
+	 * @param payments payments to make
+	 * @return saved transactions, in the order of the payments
+	 */
+	public List<Transaction> transferBatch(Integer issuerId, List<PaymentViewModel> payments) {
+		return retry("Transfer from user " + issuerId,
+				() -> transactionService.createTransactions(getUser(issuerId), payments));
+	}
+
+	/**
+	 * Writes a group of single transfers in one transaction, each transfer being given its saved transaction or
+	 * the reason it was refused. Users are read again on each attempt, and with the ORDERED_LOCKING mode all
+	 * issuers and payees of the group are locked in ascending id order before any payment is checked. If the group
+	 * still fails as a whole, each transfer is run again in its own transaction, so that one payment never fails the
+	 * others.
+	 *
+	 * @param transfers transfers to make, from any issuers
+	 */
+	public void transferGroup(List<GroupedTransfer> transfers) {
+		try {
+			retry("Group of " + transfers.size() + " transfers", () -> {
+				transactionService.createTransactionGroup(transfers, lockGroupUsers(transfers));
+				return null;
+			});
+		} catch (RuntimeException e) {
+			log.warn("Group of " + transfers.size() + " transfers failed, running them one by one: " + e.getMessage());
+			for (GroupedTransfer transfer : transfers) {
+				transfer.reset();
+				try {
+					transfer.setTransaction(transfer(transfer.getIssuerId(), transfer.getPayeeId(),
+							transfer.getDescription(), transfer.getAmount()));
+				} catch (RuntimeException failure) {
+					transfer.setFailure(failure);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs a transfer in its own transaction, again while it loses a concurrency conflict.
+	 */
+	private <T> T retry(String transfers, Supplier<T> transfer) {
+		long backoff = INITIAL_BACKOFF_MILLIS;
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return transactionTemplate.execute(status -> transfer.get());
+			} catch (ConcurrencyFailureException e) {
+				if (attempt >= MAX_ATTEMPTS) {
+					log.error(transfers + " still conflicting after " + attempt + " attempts.");
+					throw e;
+				}
+				log.warn(transfers + " conflicted with a concurrent update, retrying in "
+						+ backoff + " ms.");
+				retries.increment();
+				pause(backoff, e);
+				backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+			}
+		}
+	}
+
+	private Transaction createTransaction(Integer issuerId, Integer payeeId, String description, Money amount) {
+		if (mode == TransferMode.ORDERED_LOCKING) {
+			Map<Integer, User> users = userService.lockUsers(issuerId, payeeId);
+			return transactionService.createTransaction(users.get(issuerId), users.get(payeeId), description, amount);
+		}
+		return transactionService.createTransaction(getUser(issuerId), getUser(payeeId), description, amount);
+	}
+
+	/**
+	 * @return users of the group locked by id with the ORDERED_LOCKING mode, none otherwise.
+	 */
+	private Map<Integer, User> lockGroupUsers(List<GroupedTransfer> transfers) {
+		if (mode != TransferMode.ORDERED_LOCKING) {
+			return Map.of();
+		}
+		return userService.lockUsers(transfers.stream()
+				.flatMap(transfer -> Stream.of(transfer.getIssuerId(), transfer.getPayeeId()))
+				.distinct()
+				.toArray(Integer[] :: new));
+	}
+
+	private User getUser(Integer id) {
+		return userService.getUserById(id)
+				.orElseThrow(() -> new BuddyNotFoundException("User " + id + " does not exist."));
+	}
+
+	/**
+	 * Waits before the next attempt, with some jitter so that conflicting transfers do not retry together.
+	 */
+	private static void pause(long backoff, ConcurrencyFailureException conflict) {
+		try {
+			Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw conflict;
+		}
+	}
+}
@@ -2,24 +2,31 @@ package com.paymybuddy.paymybuddy.service;
 
 import com.paymybuddy.paymybuddy.constants.EmailValidator;
 import com.paymybuddy.paymybuddy.constants.Fee;
+import com.paymybuddy.paymybuddy.constants.Pagination;
 import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
 import com.paymybuddy.paymybuddy.exceptions.EmailAlreadyUsedException;
+import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.SignUpViewModel;
 import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
 import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import javax.transaction.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -34,10 +41,29 @@ public class UserService {
 	@Autowired
 	private final BCryptPasswordEncoder passwordEncoder;
 
+	private final LedgerService ledgerService;
+
+	/**
+	 * Name of the request attribute holding the authenticated user once resolved.
+	 */
+	private static final String AUTHENTICATED_USER_ATTRIBUTE = UserService.class.getName() + ".authenticatedUser";
+
+	/**
+	 * Number of times the authenticated user was read from database, at most once per request.
+	 */
+	private final Counter authenticatedUserLookups;
+
 	public UserService(UserRepository userRepository,
-			BCryptPasswordEncoder passwordEncoder) {
+			BCryptPasswordEncoder passwordEncoder,
+			LedgerService ledgerService,
+			MeterRegistry meterRegistry) {
 		this.userRepository  = userRepository;
 		this.passwordEncoder = passwordEncoder;
+		this.ledgerService   = ledgerService;
+		this.authenticatedUserLookups = Counter.builder("user.lookups")
+				.tag("user", "authenticated")
+				.description("Authenticated user reads from database")
+				.register(meterRegistry);
 	}
 
 	/**
@@ -69,16 +95,15 @@ public class UserService {
 	}
 
 	/**
-	 * Lists all users in database.
+	 * Streams one page of users, in ascending id order.
 	 *
-	 * @return a set of users.
+	 * @param afterId Id of the last user of the previous page, 0 for the first page.
+	 * @param size    Number of users wanted, at most {@link Pagination#MAX_STREAMED_SIZE}.
+	 * @return users, to be read and closed within a transaction.
 	 */
-	public List<UserViewModel> getUsers() {
-		Iterable<User>      users          = userRepository.findAll();
-		List<UserViewModel> usersViewModel = new ArrayList<>();
-		// extract info from user to user view model
-		users.forEach(user -> usersViewModel.add(userToViewModel(user)));
-		return usersViewModel;
+	public Stream<UserViewModel> streamUsers(int afterId, int size) {
+		int limit = Math.min(Math.max(size, 1), Pagination.MAX_STREAMED_SIZE);
+		return userRepository.streamViewModelsAfter(afterId, PageRequest.of(0, limit));
 	}
 
 	/**
@@ -101,6 +126,36 @@ public class UserService {
 		return userRepository.findByEmail(email);
 	}
 
+	/**
+	 * Finds users by their email addresses, in one query.
+	 *
+	 * @param emails Users' email addresses.
+	 * @return users by normalized email, emails matching no user are left out.
+	 */
+	public Map<String, User> getUsersByEmails(Collection<String> emails) {
+		Map<String, User> users = new HashMap<>();
+		userRepository.findByEmailIn(emails).forEach(user -> users.put(normalizeEmail(user.getEmail()), user));
+		return users;
+	}
+
+	/**
+	 * Reads users and locks their rows until the end of the current transaction. Rows are always locked in
+	 * ascending id order, so that two transactions locking the same users wait for each other instead of
+	 * deadlocking.
+	 *
+	 * @param ids User ids, in any order.
+	 * @return locked users by id.
+	 */
+	@Transactional(Transactional.TxType.MANDATORY)
+	public Map<Integer, User> lockUsers(Integer... ids) {
+		Map<Integer, User> users = new TreeMap<>();
+		for (Integer id : new TreeSet<>(Arrays.asList(ids))) {
+			users.put(id, userRepository.findForUpdateById(id).orElseThrow(
+					() -> new BuddyNotFoundException("User " + id + " does not exist.")));
+		}
+		return users;
+	}
+
 	/**
 	 * Deletes a user.
 	 *
@@ -111,6 +166,16 @@ public class UserService {
 		userRepository.delete(user);
 	}
 
+	/**
+	 * Normalizes an email as saved by signup and imports, so that emails are compared whatever their case.
+	 *
+	 * @param email email as typed, may be null
+	 * @return the email trimmed and in lower case.
+	 */
+	public static String normalizeEmail(String email) {
+		return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+	}
+
 	/**
 	 * Email validator.
 	 *
@@ -131,8 +196,9 @@ public class UserService {
 		// if amount is still not valid after interface's validator, remove any negative signs
 		amount = amount.replace("-", "");
 
-		user.setBalance(user.getBalance().add(new BigDecimal(amount).setScale(Fee.SCALE, RoundingMode.HALF_UP)));
-		userRepository.save(user);
+		BigDecimal deposited = new BigDecimal(amount).setScale(Fee.SCALE, RoundingMode.HALF_UP);
+		creditBalance(user, deposited);
+		ledgerService.recordDeposit(user, deposited);
 	}
 
 	/**
@@ -143,8 +209,43 @@ public class UserService {
 		// if amount is still not valid after interface's validator, remove any negative signs
 		amount = amount.replace("-", "");
 
-		user.setBalance(user.getBalance().subtract(new BigDecimal(amount).setScale(Fee.SCALE, RoundingMode.HALF_UP)));
-		userRepository.save(user);
+		BigDecimal withdrawn = new BigDecimal(amount).setScale(Fee.SCALE, RoundingMode.HALF_UP);
+		debitBalance(user, withdrawn);
+		ledgerService.recordWithdrawal(user, withdrawn);
+	}
+
+	/**
+	 * Adds an amount to user's balance. The database balance is updated in one statement, so that concurrent
+	 * changes are never lost, then the user object is moved by the same amount.
+	 *
+	 * @param user   User to credit.
+	 * @param amount Amount to add.
+	 */
+	@Transactional
+	public void creditBalance(User user, BigDecimal amount) {
+		if (userRepository.creditBalance(user.getId(), amount) == 0) {
+			String errorMessage = "Email " + user.getEmail() + " does not match any Buddy.";
+			log.error(errorMessage);
+			throw new BuddyNotFoundException(errorMessage);
+		}
+		user.setBalance(user.getBalance().add(amount));
+	}
+
+	/**
+	 * Subtracts an amount from user's balance. The database balance is only updated if it covers the amount,
+	 * checked in the same statement, then the user object is moved by the same amount.
+	 *
+	 * @param user   User to debit.
+	 * @param amount Amount to subtract.
+	 */
+	@Transactional
+	public void debitBalance(User user, BigDecimal amount) {
+		if (userRepository.debitBalance(user.getId(), amount) == 0) {
+			String errorMessage = "Balance of " + user.getEmail() + " is insufficient to debit " + amount + ".";
+			log.error(errorMessage);
+			throw new InsufficientBalanceException(errorMessage);
+		}
+		user.setBalance(user.getBalance().subtract(amount));
 	}
 
 	public static UserViewModel userToViewModel(User user) {
@@ -152,12 +253,39 @@ public class UserService {
 				user.getBalance());
 	}
 
+	/**
+	 * @return a new user, to be created, from what they filled in to sign up.
+	 */
+	public static User signUpToUser(SignUpViewModel signUp) {
+		User user = new User();
+		user.setEmail(normalizeEmail(signUp.getEmail()));
+		user.setPassword(signUp.getPassword());
+		user.setFirstName(signUp.getFirstName());
+		user.setLastName(signUp.getLastName());
+		return user;
+	}
+
+	/**
+	 * Returns the authenticated user. The user is read from database once per HTTP request,
+	 * then kept in the request attributes for the following calls.
+	 *
+	 * @return the authenticated user.
+	 */
 	public User getAuthenticatedUser() {
-		String username = SecurityContextHolder.getContext().getAuthentication().getName();
-		if (getUserByEmail(username).isEmpty()) {
-			throw new BuddyNotFoundException("Email " + username + " does not match any Buddy.");
+		String            username = SecurityContextHolder.getContext().getAuthentication().getName();
+		RequestAttributes request  = RequestContextHolder.getRequestAttributes();
+		if (request != null
+				&& request.getAttribute(AUTHENTICATED_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof User user
+				&& username.equalsIgnoreCase(user.getEmail())) {
+			return user;
+		}
+		authenticatedUserLookups.increment();
+		User user = getUserByEmail(username).orElseThrow(
+				() -> new BuddyNotFoundException("Email " + username + " does not match any Buddy."));
+		if (request != null) {
+			request.setAttribute(AUTHENTICATED_USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
 		}
-		return getUserByEmail(username).get();
+		return user;
 	}
 
 }
@@ -1,3 +1,5 @@
+-- Baseline schema (version 1). Later changes are applied at startup by the Flyway migrations
+-- in src/main/resources/db/migration/mysql.
 DROP DATABASE IF EXISTS db_paymybuddy ;
 
 CREATE DATABASE db_paymybuddy;
@@ -0,0 +1,16 @@
+-- Snapshots are marked by entry date rather than by entry id, ids being reserved by blocks. Snapshots only
+-- checkpoint the ledger, so the existing ones are dropped and the next run takes them again from all entries
+DELETE FROM balance_snapshot;
+
+DROP INDEX idx_balance_snapshot_user;
+DROP INDEX idx_balance_snapshot_mark;
+ALTER TABLE balance_snapshot DROP COLUMN last_entry_id;
+ALTER TABLE balance_snapshot ADD COLUMN entries_before TIMESTAMP NOT NULL;
+
+-- A user has at most one snapshot per mark
+CREATE UNIQUE INDEX idx_balance_snapshot_user ON balance_snapshot (user_id, entries_before);
+CREATE INDEX idx_balance_snapshot_mark ON balance_snapshot (entries_before);
+
+-- Snapshots sum the entries dated between two marks, balances a user's entries dated from their mark
+CREATE INDEX idx_ledger_entry_date ON ledger_entry (date);
+CREATE INDEX idx_ledger_entry_user_date ON ledger_entry (user_id, date);
@@ -0,0 +1,19 @@
+-- A user's transactions are read from both sides, most recent first
+CREATE INDEX idx_transaction_issuer_date ON transaction (fk_issuer_id, date DESC, transaction_id DESC);
+CREATE INDEX idx_transaction_payee_date ON transaction (fk_payee_id, date DESC, transaction_id DESC);
+
+-- A user's connections are read from both sides
+CREATE INDEX idx_connection_initializer ON connection (fk_initializer_id, fk_receiver_id);
+CREATE INDEX idx_connection_receiver ON connection (fk_receiver_id, fk_initializer_id);
+
+-- Two buddies can only be connected once, whoever initialized the connection.
+-- Pairs connected more than once keep their first connection, the others are deleted: nothing refers to connections.
+DELETE FROM connection c
+WHERE EXISTS (SELECT 1 FROM connection o
+              WHERE LEAST(o.fk_initializer_id, o.fk_receiver_id) = LEAST(c.fk_initializer_id, c.fk_receiver_id)
+                AND GREATEST(o.fk_initializer_id, o.fk_receiver_id) = GREATEST(c.fk_initializer_id, c.fk_receiver_id)
+                AND o.connection_id < c.connection_id);
+ALTER TABLE connection ADD COLUMN buddy_low_id INT GENERATED ALWAYS AS (LEAST(fk_initializer_id, fk_receiver_id));
+ALTER TABLE connection ADD COLUMN buddy_high_id INT GENERATED ALWAYS AS (GREATEST(fk_initializer_id, fk_receiver_id));
+CREATE UNIQUE INDEX uk_connection_buddies ON connection (buddy_low_id, buddy_high_id);
+
@@ -0,0 +1,3 @@
+-- A user's most recent connection is read from both sides
+CREATE INDEX idx_connection_initializer_date ON connection (fk_initializer_id, starting_date DESC, connection_id DESC);
+CREATE INDEX idx_connection_receiver_date ON connection (fk_receiver_id, starting_date DESC, connection_id DESC);
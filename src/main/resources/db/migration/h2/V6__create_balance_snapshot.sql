@@ -0,0 +1,12 @@
+-- User balances checkpointed at a ledger high-water mark, a new row per user and snapshot run
+CREATE TABLE balance_snapshot (
+    balance_snapshot_id INT NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    user_id INT NOT NULL,
+    balance DECIMAL(10, 2) NOT NULL,
+    last_entry_id INT NOT NULL,
+    date TIMESTAMP NOT NULL
+);
+
+-- A user's latest snapshot is read by its mark
+CREATE INDEX idx_balance_snapshot_user ON balance_snapshot (user_id, last_entry_id);
+CREATE INDEX idx_balance_snapshot_mark ON balance_snapshot (last_entry_id);
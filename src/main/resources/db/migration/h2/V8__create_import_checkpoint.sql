@@ -0,0 +1,10 @@
+-- User ids are reserved by blocks too, so that imported users are inserted by batches
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'user', COALESCE(MAX(user_id), 0) + 50 FROM "user";
+
+-- Last line imported from each CSV file, so that a failed import resumes after it
+CREATE TABLE import_checkpoint (
+    import_name VARCHAR(255) NOT NULL PRIMARY KEY,
+    line_number INT NOT NULL,
+    date TIMESTAMP NOT NULL
+);
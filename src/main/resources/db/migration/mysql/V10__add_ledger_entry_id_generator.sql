@@ -0,0 +1,3 @@
+-- Ledger entry ids are reserved by blocks too, so that the entries of a transfer are inserted by batches
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'ledger_entry', COALESCE(MAX(ledger_entry_id), 0) + 50 FROM ledger_entry;
@@ -0,0 +1,2 @@
+-- Users are versioned for optimistic locking, balance updates increment the version too
+ALTER TABLE user ADD COLUMN version INT NOT NULL DEFAULT 0;
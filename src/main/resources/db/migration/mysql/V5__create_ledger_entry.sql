@@ -0,0 +1,20 @@
+-- Append-only double-entry ledger, user and transaction ids are kept without foreign key to outlive deletions
+CREATE TABLE ledger_entry (
+    ledger_entry_id INT NOT NULL PRIMARY KEY AUTO_INCREMENT,
+    account VARCHAR(20) NOT NULL,
+    user_id INT,
+    transaction_id INT,
+    debit DECIMAL(10, 2) NOT NULL DEFAULT 0,
+    credit DECIMAL(10, 2) NOT NULL DEFAULT 0,
+    date DATETIME NOT NULL
+);
+
+-- Replaying a user's balance reads their entries in id order
+CREATE INDEX idx_ledger_entry_user ON ledger_entry (user_id, ledger_entry_id);
+CREATE INDEX idx_ledger_entry_transaction ON ledger_entry (transaction_id);
+
+-- Existing balances are opened as deposits from the users' bank accounts
+INSERT INTO ledger_entry (account, user_id, debit, credit, date)
+SELECT 'BANK', user_id, balance, 0, CURRENT_TIMESTAMP FROM user WHERE balance <> 0;
+INSERT INTO ledger_entry (account, user_id, debit, credit, date)
+SELECT 'USER', user_id, 0, balance, CURRENT_TIMESTAMP FROM user WHERE balance <> 0;
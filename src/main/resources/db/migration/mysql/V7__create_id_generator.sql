@@ -0,0 +1,11 @@
+-- Transaction and connection ids are reserved by blocks of 50 from this table, so that inserts can be batched.
+-- Each row holds the upper id of the next block, so the first block starts right after the existing ids.
+CREATE TABLE id_generator (
+    sequence_name VARCHAR(50) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'transaction', COALESCE(MAX(transaction_id), 0) + 50 FROM transaction;
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'connection', COALESCE(MAX(connection_id), 0) + 50 FROM connection;
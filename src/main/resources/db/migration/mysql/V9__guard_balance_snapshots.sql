@@ -0,0 +1,16 @@
+-- Overlapping snapshot runs could save a user twice at the same mark, keep the first row of each pair
+DELETE s FROM balance_snapshot s
+JOIN balance_snapshot o ON o.user_id = s.user_id AND o.last_entry_id = s.last_entry_id
+                       AND o.balance_snapshot_id < s.balance_snapshot_id;
+
+-- A user has at most one snapshot per mark
+DROP INDEX idx_balance_snapshot_user ON balance_snapshot;
+CREATE UNIQUE INDEX idx_balance_snapshot_user ON balance_snapshot (user_id, last_entry_id);
+
+-- Scheduled jobs run by one application instance at a time, the one leasing the job's row until locked_until
+CREATE TABLE job_lock (
+    job_name VARCHAR(50) NOT NULL PRIMARY KEY,
+    locked_until DATETIME NOT NULL
+);
+
+INSERT INTO job_lock (job_name, locked_until) VALUES ('balance_snapshot', '1970-01-01 00:00:00');
@@ -3,25 +3,31 @@ package com.paymybuddy.paymybuddy.controller;
 import com.paymybuddy.paymybuddy.model.Connection;
 import com.paymybuddy.paymybuddy.model.User;
 import com.paymybuddy.paymybuddy.service.ConnectionService;
+import com.paymybuddy.paymybuddy.service.NdjsonStreamingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.List;
 import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+@WithMockUser
 @WebMvcTest(ConnectionController.class)
 class ConnectionControllerTest {
     // configure LocalDateTime.now() to 18th July 2022, 10:00:00
@@ -34,6 +40,8 @@ class ConnectionControllerTest {
     MockMvc           mockMvc;
     @MockBean
     ConnectionService connectionService;
+    @MockBean
+    NdjsonStreamingService ndjsonStreamingService;
 
     @BeforeEach
     void setUp() {
@@ -68,11 +76,17 @@ class ConnectionControllerTest {
 
     @Test
     void getConnections() throws Exception {
-        when(connectionService.getConnections())
-                .thenReturn(List.of(ConnectionService.connectionToViewModel(connection)));
-        mockMvc.perform(get("/connection"))
+        when(ndjsonStreamingService.write(any(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write("{\"id\":1}\n".getBytes());
+            return 1L;
+        });
+        MvcResult result = mockMvc.perform(get("/connection"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                .andDo(print())
-               .andExpect(status().isOk());
+               .andExpect(status().isOk())
+               .andExpect(content().string("{\"id\":1}\n"));
     }
 
     @Test
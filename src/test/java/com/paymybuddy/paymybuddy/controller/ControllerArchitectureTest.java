@@ -0,0 +1,113 @@
+package com.paymybuddy.paymybuddy.controller;
+
+import com.paymybuddy.paymybuddy.PayMyBuddyApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.annotation.*;
+
+import javax.persistence.Entity;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that no JPA entity is read or written by Jackson: request and response bodies are view models, and so is
+ * everything they hold. Serializing an entity would show its password hash and load its lazy collections.
+ */
+class ControllerArchitectureTest {
+    private static final String BASE_PACKAGE = PayMyBuddyApplication.class.getPackageName();
+
+    @Test
+    @DisplayName("Request and response bodies should never hold a JPA entity")
+    void bodies_shouldNotHold_entities() throws ClassNotFoundException {
+        List<String> violations = new ArrayList<>();
+        for (Class<?> controller : controllers()) {
+            boolean restController = AnnotatedElementUtils.hasAnnotation(controller, ResponseBody.class);
+            for (Method method : controller.getDeclaredMethods()) {
+                boolean handler = AnnotatedElementUtils.hasAnnotation(method, RequestMapping.class)
+                                  || AnnotatedElementUtils.hasAnnotation(method, ExceptionHandler.class);
+                if (!handler) {
+                    continue;
+                }
+                if (restController || AnnotatedElementUtils.hasAnnotation(method, ResponseBody.class)) {
+                    entitiesIn(ResolvableType.forMethodReturnType(method))
+                            .forEach(entity -> violations.add(describe(method) + " returns " + entity));
+                }
+                for (int i = 0; i < method.getParameterCount(); i++) {
+                    MethodParameter parameter = new MethodParameter(method, i);
+                    if (parameter.hasParameterAnnotation(RequestBody.class)) {
+                        entitiesIn(ResolvableType.forMethodParameter(parameter))
+                                .forEach(entity -> violations.add(describe(method) + " reads " + entity));
+                    }
+                }
+            }
+        }
+        assertThat(violations).isEmpty();
+    }
+
+    private static List<Class<?>> controllers() throws ClassNotFoundException {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(Controller.class));
+        scanner.addIncludeFilter(new AnnotationTypeFilter(ControllerAdvice.class));
+        List<Class<?>> controllers = new ArrayList<>();
+        for (BeanDefinition definition : scanner.findCandidateComponents(BASE_PACKAGE)) {
+            controllers.add(ClassUtils.forName(definition.getBeanClassName(),
+                                            ControllerArchitectureTest.class.getClassLoader()));
+        }
+        assertThat(controllers).isNotEmpty();
+        return controllers;
+    }
+
+    /**
+     * Finds entities in a type, its type arguments, and the fields of the application classes it refers to.
+     */
+    private static Set<Class<?>> entitiesIn(ResolvableType type) {
+        Set<Class<?>> entities = new HashSet<>();
+        collectEntities(type, new HashSet<>(), entities);
+        return entities;
+    }
+
+    private static void collectEntities(ResolvableType type, Set<Class<?>> visited, Set<Class<?>> entities) {
+        Class<?> resolved = type.resolve();
+        if (resolved == null) {
+            return;
+        }
+        if (resolved.isAnnotationPresent(Entity.class)) {
+            entities.add(resolved);
+            return;
+        }
+        if (type.isArray()) {
+            collectEntities(type.getComponentType(), visited, entities);
+        }
+        for (ResolvableType generic : type.getGenerics()) {
+            collectEntities(generic, visited, entities);
+        }
+        if (resolved.getPackageName().startsWith(BASE_PACKAGE) && visited.add(resolved)) {
+            for (Class<?> current = resolved; current != null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        collectEntities(ResolvableType.forField(field, type), visited, entities);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String describe(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+}
@@ -0,0 +1,100 @@
+package com.paymybuddy.paymybuddy.controller;
+
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Renders pages without a session open during rendering, to check that they are given everything they show.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser(username = "rachel.pages@mail.com")
+class PagesIT {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ConnectionRepository connectionRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    private User       rachel;
+    private User       ross;
+    private Connection connection;
+
+    @BeforeEach
+    void setup() {
+        rachel = userRepository.save(newUser("rachel.pages@mail.com", "Rachel"));
+        ross   = userRepository.save(newUser("ross.pages@mail.com", "Ross"));
+        connection = connectionRepository.save(new Connection(null, rachel, ross, LocalDateTime.of(2022, 7, 1, 9, 0)));
+        transactionRepository.save(new Transaction(null, rachel, ross, LocalDateTime.of(2022, 7, 18, 10, 0),
+                                                   new BigDecimal("12.50"), "Central Perk"));
+    }
+
+    @AfterEach
+    void reset() {
+        transactionRepository.deleteAll(transactionRepository.findByIssuer(rachel));
+        connectionRepository.delete(connection);
+        userRepository.deleteAllById(List.of(rachel.getId(), ross.getId()));
+    }
+
+    @Test
+    @DisplayName("Home page should show the most recent buddy and transaction")
+    void homePage() throws Exception {
+        mockMvc.perform(get("/"))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("Good to see you again, Rachel!")))
+               .andExpect(content().string(containsString("Ross, added the")));
+    }
+
+    @Test
+    @DisplayName("Profile page should show the buddies")
+    void profilePage() throws Exception {
+        mockMvc.perform(get("/profile"))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("ross.pages@mail.com")));
+    }
+
+    @Test
+    @DisplayName("Transfer page should show the buddies and the transactions, by page or from a cursor")
+    void transferPage() throws Exception {
+        mockMvc.perform(get("/transfer"))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("Central Perk")));
+        mockMvc.perform(get("/transfer").param("cursor", ""))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("Central Perk")));
+    }
+
+    private static User newUser(String email, String firstName) {
+        return new User(null, email, "password", firstName, "Green", new BigDecimal("100.00"),
+                        new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+}
@@ -0,0 +1,67 @@
+package com.paymybuddy.paymybuddy.controller;
+
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Signs a user up through the API and counts what the database is asked for.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@WithMockUser
+class SignUpIT {
+    private static final String EMAIL = "phoebe.signup@mail.com";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void reset() {
+        userRepository.findByEmail(EMAIL).ifPresent(userRepository :: delete);
+    }
+
+    @Test
+    @DisplayName("Signing up should insert the user once, without reading it back nor loading its collections")
+    void signUp_shouldInsert_once() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(post("/user").with(csrf())
+                                .content("{\"email\":\"" + EMAIL + "\",\"password\":\"smelly cat\","
+                                         + "\"firstName\":\"Phoebe\",\"lastName\":\"Buffay\"}")
+                                .contentType(MediaType.APPLICATION_JSON))
+               .andExpect(status().isCreated())
+               .andExpect(jsonPath("$.email").value(EMAIL))
+               .andExpect(jsonPath("$.password").doesNotExist());
+
+        assertEquals(1, statistics.getEntityInsertCount());
+        // only the check that the email is free
+        assertEquals(1, statistics.getQueryExecutionCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+}
@@ -2,26 +2,32 @@ package com.paymybuddy.paymybuddy.controller;
 
 import com.paymybuddy.paymybuddy.model.Transaction;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.service.NdjsonStreamingService;
 import com.paymybuddy.paymybuddy.service.TransactionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.List;
 import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+@WithMockUser
 @WebMvcTest(TransactionController.class)
 class TransactionControllerTest {
     // configure LocalDateTime.now() to 18th July 2022, 10:00:00
@@ -34,6 +40,8 @@ class TransactionControllerTest {
     MockMvc           mockMvc;
     @MockBean
     TransactionService transactionService;
+    @MockBean
+    NdjsonStreamingService ndjsonStreamingService;
     private final User testUser = new User();
 
     @BeforeEach
@@ -70,11 +78,17 @@ class TransactionControllerTest {
 
     @Test
     void getTransactions() throws Exception {
-        when(transactionService.getUserTransactions(testUser.getId()))
-                .thenReturn(List.of(TransactionService.transactionToViewModel(transaction)));
-        mockMvc.perform(get("/transaction"))
+        when(ndjsonStreamingService.write(any(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write("{\"id\":1}\n".getBytes());
+            return 1L;
+        });
+        MvcResult result = mockMvc.perform(get("/transaction"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                .andDo(print())
-               .andExpect(status().isOk());
+               .andExpect(status().isOk())
+               .andExpect(content().string("{\"id\":1}\n"));
     }
 
     @Test
@@ -1,13 +1,19 @@
 package com.paymybuddy.paymybuddy.controller;
 
 import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
+import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
 import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.Money;
 import com.paymybuddy.paymybuddy.model.Transaction;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionPageViewModel;
 import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
 import com.paymybuddy.paymybuddy.repository.TransactionRepository;
 import com.paymybuddy.paymybuddy.repository.UserRepository;
 import com.paymybuddy.paymybuddy.service.ConnectionService;
+import com.paymybuddy.paymybuddy.service.NdjsonStreamingService;
+import com.paymybuddy.paymybuddy.service.PartitionedTransferExecutor;
+import com.paymybuddy.paymybuddy.service.TransactionExportService;
 import com.paymybuddy.paymybuddy.service.TransactionService;
 import com.paymybuddy.paymybuddy.service.UserService;
 import org.junit.jupiter.api.BeforeAll;
@@ -18,8 +24,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.Clock;
 import java.time.LocalDateTime;
@@ -27,17 +36,19 @@ import java.time.ZoneId;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(UserController.class)
+@WebMvcTest(value = UserController.class, properties = "paymybuddy.transfer.timeout-seconds=1")
+@WithMockUser
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class UserControllerTest {
     @MockBean
@@ -52,6 +63,12 @@ class UserControllerTest {
     private TransactionService   transactionService;
     @MockBean
     TransactionRepository transactionRepository;
+    @MockBean
+    private PartitionedTransferExecutor transferExecutor;
+    @MockBean
+    private TransactionExportService transactionExportService;
+    @MockBean
+    private NdjsonStreamingService   ndjsonStreamingService;
 
     @Autowired
     private MockMvc mockMvc;
@@ -120,25 +137,43 @@ class UserControllerTest {
 
         String email    = "test@mail.com";
         String password = "rawPassword";
+        when(userService.createUser(any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            assertTrue(email.equals(user.getEmail()) && password.equals(user.getPassword()));
+            user.setId(id);
+            user.setPassword("$2a$10$hashedPassword");
+            user.setBalance(new BigDecimal("0.00"));
+            return user;
+        });
 
-        mockMvc.perform(post("/user")
-                                .param("email", email)
-                                .param("password", password)
+        mockMvc.perform(post("/user").with(csrf())
+                                .content("{\"email\":\"" + email + "\",\"password\":\"" + password + "\","
+                                         + "\"firstName\":\"Monica\",\"lastName\":\"Geller\"}")
                                 .contentType(MediaType.APPLICATION_JSON)
                                 .accept(MediaType.APPLICATION_JSON))
-               .andExpect(status().isCreated());
+               .andExpect(status().isCreated())
+               .andExpect(jsonPath("$.id").value(id))
+               .andExpect(jsonPath("$.email").value(email))
+               .andExpect(jsonPath("$.firstname").value("Monica"))
+               .andExpect(jsonPath("$.password").doesNotExist())
+               .andExpect(jsonPath("$.initiatedTransactions").doesNotExist());
     }
 
 
     @Test
-    public void getUsers_shouldReturn_ListOfAllPeople() throws Exception {
-        when(userService.getUsers())
-                .thenReturn(List.of(UserService.userToViewModel(testUser),
-                                    UserService.userToViewModel(otherUser)));
-        mockMvc.perform(get("/user"))
+    public void getUsers_shouldStream_pageOfUsers() throws Exception {
+        when(ndjsonStreamingService.write(any(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write("{\"id\":151}\n".getBytes());
+            return 1L;
+        });
+        MvcResult result = mockMvc.perform(get("/user").param("after", "150").param("size", "1"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                .andDo(print())
                .andExpect(status().isOk())
-               .andExpect(jsonPath("$", hasSize(2)));
+               .andExpect(header().string("Content-Type", NdjsonStreamingService.CONTENT_TYPE))
+               .andExpect(content().string("{\"id\":151}\n"));
     }
 
 
@@ -155,7 +190,7 @@ class UserControllerTest {
     @Test
     void deposit() throws Exception {
         when(userService.getAuthenticatedUser()).thenReturn(testUser);
-        mockMvc.perform(put("/user/deposit")
+        mockMvc.perform(put("/user/deposit").with(csrf())
                                 .param("amount", "50.00"))
                .andDo(print())
                .andExpect(status().isOk());
@@ -164,7 +199,7 @@ class UserControllerTest {
     @Test
     void withdraw() throws Exception {
         when(userService.getAuthenticatedUser()).thenReturn(testUser);
-        mockMvc.perform(put("/user/withdraw")
+        mockMvc.perform(put("/user/withdraw").with(csrf())
                                 .param("amount", "50.00"))
                .andDo(print())
                .andExpect(status().isOk());
@@ -176,7 +211,7 @@ class UserControllerTest {
         when(userService.getAuthenticatedUser()).thenReturn(testUser);
         when(userRepository.findByEmail(any(String.class))).thenReturn(Optional.of(testUser));
         when(connectionService.createConnectionBetweenTwoUsers(testUser, otherUser.getEmail())).thenReturn(connection);
-        mockMvc.perform(post("/user/add-connection")
+        mockMvc.perform(post("/user/add-connection").with(csrf())
                                 .param("email", otherUser.getEmail()))
                .andDo(print())
                .andExpect(status().isCreated());
@@ -202,20 +237,56 @@ class UserControllerTest {
                .andExpect(status().isOk());
     }
 
+    @Test
+    void getTransactions_withSize_shouldReturn_pageAndNextCursor() throws Exception {
+        when(transactionService.getUserTransactionsBefore(id, "abc", 1))
+                .thenReturn(new TransactionPageViewModel(List.of(TransactionService.transactionToViewModel(transaction)),
+                                                         "def"));
+        mockMvc.perform(get("/user/" + id + "/transactions")
+                                .param("size", "1")
+                                .param("cursor", "abc"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.transactions", hasSize(1)))
+               .andExpect(jsonPath("$.next").value("def"));
+    }
+
     @Test
     void payABuddy() throws Exception {
         when(userService.getAuthenticatedUser()).thenReturn(testUser);
         when(userService.getUserByEmail(otherUser.getEmail())).thenReturn(Optional.of(otherUser));
         when(connectionService.getUserConnections(testUser))
                 .thenReturn(List.of(UserService.userToViewModel(otherUser)));
-        when(transactionService.createTransaction(any(User.class), any(User.class), anyString(), anyDouble()))
-                .thenReturn(transaction);
-        mockMvc.perform(post("/user/pay")
-                                .param("email", otherUser.getEmail())
-                                .param("description", "Pay a buddy test")
-                                .param("amount", "8.93"))
+        when(transferExecutor.transfer(eq(testUser.getId()), eq(otherUser.getId()), anyString(), any(Money.class)))
+                .thenReturn(CompletableFuture.completedFuture(transaction));
+        MvcResult result = mockMvc.perform(post("/user/pay").with(csrf())
+                                                   .param("email", otherUser.getEmail())
+                                                   .param("description", "Pay a buddy test")
+                                                   .param("amount", "8.93"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                .andDo(print())
-               .andExpect(status().isCreated());
+               .andExpect(status().isCreated())
+               .andExpect(jsonPath("$.id").value(transaction.getId()));
+    }
+
+    @Test
+    void payABuddy_shouldReturn_refusedPayment() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(testUser);
+        when(userService.getUserByEmail(otherUser.getEmail())).thenReturn(Optional.of(otherUser));
+        when(transferExecutor.transfer(eq(testUser.getId()), eq(otherUser.getId()), anyString(), any(Money.class)))
+                .thenReturn(CompletableFuture.failedFuture(new InsufficientBalanceException("Insufficient balance.")));
+        MvcResult result = mockMvc.perform(post("/user/pay").with(csrf())
+                                                   .param("email", otherUser.getEmail())
+                                                   .param("description", "Pay a buddy test")
+                                                   .param("amount", "8.93"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+               .andDo(print())
+               .andExpect(status().isBadRequest())
+               .andExpect(failed -> assertTrue(failed.getResolvedException() instanceof InsufficientBalanceException));
     }
 
     @Test
@@ -224,7 +295,7 @@ class UserControllerTest {
         when(userService.getUserByEmail(otherUser.getEmail())).thenReturn(Optional.empty());
         when(connectionService.getUserConnections(testUser)).thenReturn(List.of(UserService.userToViewModel(otherUser)));
 
-        mockMvc.perform(post("/user/pay")
+        mockMvc.perform(post("/user/pay").with(csrf())
                                 .param("email", otherUser.getEmail())
                                 .param("description", "Pay a buddy test")
                                 .param("amount", "8.93"))
@@ -232,4 +303,60 @@ class UserControllerTest {
                .andExpect(status().isNotFound())
                .andExpect(result -> assertTrue(result.getResolvedException() instanceof BuddyNotFoundException));
     }
-}
\ No newline at end of file
+
+    @Test
+    void payABuddy_shouldReturn_unavailable_whenLaneIsLate() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(testUser);
+        when(userService.getUserByEmail(otherUser.getEmail())).thenReturn(Optional.of(otherUser));
+        when(transferExecutor.transfer(eq(testUser.getId()), eq(otherUser.getId()), anyString(), any(Money.class)))
+                .thenReturn(new CompletableFuture<>());
+        MvcResult result = mockMvc.perform(post("/user/pay").with(csrf())
+                                                   .param("email", otherUser.getEmail())
+                                                   .param("description", "Pay a buddy test")
+                                                   .param("amount", "8.93"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+               .andDo(print())
+               .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void payBuddies() throws Exception {
+        when(userService.getAuthenticatedUser()).thenReturn(testUser);
+        when(transferExecutor.transferBatch(eq(testUser.getId()), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(List.of(transaction)));
+
+        MvcResult result = mockMvc.perform(post("/user/pay/batch").with(csrf())
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .content("[{\"payeeEmail\": \"" + otherUser.getEmail() + "\", "
+                                                            + "\"amount\": 12.69, \"description\": \"Dinner\"}]"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+               .andDo(print())
+               .andExpect(status().isCreated())
+               .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void exportTransactions() throws Exception {
+        when(userService.getUserById(id)).thenReturn(Optional.of(testUser));
+        when(transactionExportService.export(eq(testUser.getId()), eq(TransactionExportService.Format.NDJSON), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(2, OutputStream.class).write("{\"id\":1}\n".getBytes());
+                    return 1L;
+                });
+
+        MvcResult result = mockMvc.perform(get("/user/" + id + "/transactions/export").param("format", "NDJSON"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(header().string("Content-Type", "application/x-ndjson"))
+               .andExpect(header().string("Content-Disposition",
+                                          "attachment; filename=\"transactions-" + testUser.getId() + ".ndjson\""))
+               .andExpect(content().string("{\"id\":1}\n"));
+    }
+}
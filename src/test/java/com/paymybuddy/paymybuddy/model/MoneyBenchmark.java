@@ -0,0 +1,63 @@
+package com.paymybuddy.paymybuddy.model;
+
+import com.paymybuddy.paymybuddy.constants.Fee;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares validating a payment amount and charging its fee with doubles turned into BigDecimals, as payments did
+ * before Money, with Money. Not run by the tests, run it with the GC profiler to see allocations per payment:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main MoneyBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private static final double LEGACY_TRANSACTION_FEE = 0.005;
+
+    @Param({"12.34", "999.99"})
+    String amount;
+
+    private double doubleAmount;
+    private Money  money;
+
+    @Setup
+    public void setup() {
+        doubleAmount = Double.parseDouble(amount);
+        money        = Money.valueOf(amount);
+    }
+
+    @Benchmark
+    public long doubleAndBigDecimals() {
+        if (doubleAmount <= 0) {
+            throw new IllegalArgumentException();
+        }
+        Map<String, BigDecimal> amountAndFee = new HashMap<>();
+        BigDecimal bdAmount = new BigDecimal(Double.toString(doubleAmount)).setScale(Fee.SCALE, RoundingMode.HALF_UP);
+        BigDecimal bdFee = new BigDecimal(Double.toString(doubleAmount * LEGACY_TRANSACTION_FEE))
+                .setScale(Fee.SCALE, RoundingMode.HALF_UP);
+        amountAndFee.put("amount", bdAmount);
+        amountAndFee.put("fee", bdFee);
+        amountAndFee.put("amountWithFee", bdAmount.add(bdFee));
+        return amountAndFee.get("amountWithFee").unscaledValue().longValue();
+    }
+
+    @Benchmark
+    public long money() {
+        if (!money.isPositive()) {
+            throw new IllegalArgumentException();
+        }
+        return money.withFee().getMinorUnits();
+    }
+}
@@ -0,0 +1,49 @@
+package com.paymybuddy.paymybuddy.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.paymybuddy.paymybuddy.exceptions.InvalidAmountException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTest {
+    @Test
+    @DisplayName("Amounts should be rounded half up to the cent")
+    void valueOf_shouldRound_toTheCent() {
+        assertEquals(1235, Money.valueOf("12.345").getMinorUnits());
+        assertEquals(-1235, Money.valueOf("-12.345").getMinorUnits());
+        assertEquals(new BigDecimal("12.00"), Money.valueOf(" 12 ").toBigDecimal());
+    }
+
+    @Test
+    @DisplayName("Fee should be 0.5% of the amount, rounded half up to the cent")
+    void fee_shouldBe_roundedHalfUp() {
+        assertEquals(Money.valueOf("0.50"), Money.valueOf("100").fee());
+        assertEquals(Money.valueOf("100.50"), Money.valueOf("100").withFee());
+        // 0.005 and 0.0617
+        assertEquals(Money.valueOf("0.01"), Money.valueOf("1").fee());
+        assertEquals(Money.valueOf("0.06"), Money.valueOf("12.34").fee());
+        assertEquals(Money.ZERO, Money.valueOf("0.99").fee());
+    }
+
+    @Test
+    @DisplayName("Amounts which are not numbers or do not fit should throw an exception")
+    void valueOf_withInvalidAmount_shouldThrow_exception() {
+        assertThrows(InvalidAmountException.class, () -> Money.valueOf("ten"));
+        assertThrows(InvalidAmountException.class, () -> Money.valueOf("1e30"));
+    }
+
+    @Test
+    @DisplayName("Money should be read and written in JSON as a number")
+    void json_shouldUse_number() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertThat(objectMapper.writeValueAsString(Money.valueOf("8.9"))).isEqualTo("8.90");
+        assertEquals(Money.valueOf("8.93"), objectMapper.readValue("8.93", Money.class));
+    }
+}
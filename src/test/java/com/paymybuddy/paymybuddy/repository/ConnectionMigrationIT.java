@@ -0,0 +1,35 @@
+package com.paymybuddy.paymybuddy.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Migrates a database holding connections made before two buddies could only be connected once.
+ */
+class ConnectionMigrationIT {
+    @Test
+    @DisplayName("Buddies connected more than once should keep their first connection")
+    void migrate_withDuplicateConnections_shouldKeep_firstConnection() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:connection-migration;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").target("1").load().migrate();
+        jdbcTemplate.update("INSERT INTO \"user\" (user_id, email) VALUES "
+                            + "(1, 'ross@mail.com'), (2, 'rachel@mail.com'), (3, 'joey@mail.com')");
+        jdbcTemplate.update("INSERT INTO connection (connection_id, fk_initializer_id, fk_receiver_id, starting_date) "
+                            + "VALUES (10, 1, 2, NOW()), (11, 2, 1, NOW()), (12, 1, 2, NOW()), (13, 1, 3, NOW())");
+
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration/h2").load().migrate();
+
+        assertEquals(List.of(10, 13), jdbcTemplate.queryForList(
+                "SELECT connection_id FROM connection ORDER BY connection_id", Integer.class));
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+}
@@ -9,6 +9,9 @@ import org.junit.jupiter.api.TestInstance;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
 import java.time.Clock;
@@ -16,8 +19,12 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
@@ -80,4 +87,100 @@ class ConnectionRepositoryIT {
         //THEn a connection should be found
         assertTrue(connection.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Two buddies can not be connected twice, even the other way round")
+    void createConnection_betweenConnectedBuddies_shouldFail() {
+        //GIVEN an existing connection
+        connectionRepository.save(new Connection(null, initializer, receiver, LOCAL_DATE_NOW));
+        // WHEN the receiver connects to the initializer
+        Connection reversedConnection = new Connection(null, receiver, initializer, LOCAL_DATE_NOW);
+        //THEN the database refuses the second connection
+        // the insert is only sent with the next flush, such as before a query on connections
+        assertThrows(DataIntegrityViolationException.class, () -> {
+            connectionRepository.save(reversedConnection);
+            connectionRepository.count();
+        });
+    }
+
+    @Test
+    @DisplayName("existsConnectionBetween should find a connection from both sides")
+    void existsConnectionBetween_shouldFind_connectionFromBothSides() {
+        //GIVEN an existing connection
+        connectionRepository.save(new Connection(null, initializer, receiver, LOCAL_DATE_NOW));
+        //THEN it is found whichever user is given first
+        assertTrue(connectionRepository.existsConnectionBetween(initializer.getId(), receiver.getId()));
+        assertTrue(connectionRepository.existsConnectionBetween(receiver.getId(), initializer.getId()));
+    }
+
+    @Test
+    @DisplayName("existsConnectionBetween should return false when users are not connected")
+    void existsConnectionBetween_shouldReturn_falseWithoutConnection() {
+        assertFalse(connectionRepository.existsConnectionBetween(initializer.getId(), receiver.getId()));
+    }
+
+    @Test
+    @DisplayName("findBuddyIdsByUserId should return the id of the other user, from both sides")
+    void findBuddyIdsByUserId_shouldReturn_otherUserId() {
+        //GIVEN an existing connection
+        connectionRepository.save(new Connection(null, initializer, receiver, LOCAL_DATE_NOW));
+        //THEN each user finds the id of the other one
+        assertEquals(List.of(receiver.getId()), connectionRepository.findBuddyIdsByUserId(initializer.getId()));
+        assertEquals(List.of(initializer.getId()), connectionRepository.findBuddyIdsByUserId(receiver.getId()));
+    }
+
+    @Test
+    @DisplayName("findBuddyIdsByUserId should list buddies from both sides in connection order")
+    void findBuddyIdsByUserId_shouldReturn_buddiesInConnectionOrder() {
+        //GIVEN the initializer connected to the receiver, then a third user connected to the initializer
+        User third = userRepository.save(new User(null, "third.buddy@mail.com", "password", "Third", "Buddy",
+                                                  new BigDecimal("0.00"), new ArrayList<>(), new ArrayList<>(),
+                                                  new ArrayList<>(), new ArrayList<>()));
+        connectionRepository.save(new Connection(null, initializer, receiver, LOCAL_DATE_NOW));
+        connectionRepository.save(new Connection(null, third, initializer, LOCAL_DATE_NOW));
+        //THEN the buddies on both sides are listed in connection order
+        assertEquals(List.of(receiver.getId(), third.getId()),
+                     connectionRepository.findBuddyIdsByUserId(initializer.getId()));
+    }
+
+    @Test
+    @DisplayName("findPageBuddyIdsByUserId should return one page of buddies from both sides, counting them all")
+    void findPageBuddyIdsByUserId_shouldReturn_onePage() {
+        //GIVEN the initializer connected to the receiver, then a third user connected to the initializer
+        User third = userRepository.save(new User(null, "third.page@mail.com", "password", "Third", "Buddy",
+                                                  new BigDecimal("0.00"), new ArrayList<>(), new ArrayList<>(),
+                                                  new ArrayList<>(), new ArrayList<>()));
+        connectionRepository.save(new Connection(null, initializer, receiver, LOCAL_DATE_NOW));
+        connectionRepository.save(new Connection(null, third, initializer, LOCAL_DATE_NOW));
+        //WHEN reading the second page of one buddy
+        Page<Integer> page = connectionRepository.findPageBuddyIdsByUserId(initializer.getId(), PageRequest.of(1, 1));
+        //THEN the buddy with the highest id is read, out of both
+        assertEquals(List.of(third.getId()), page.getContent());
+        assertEquals(2, page.getTotalElements());
+    }
+
+    @Test
+    @DisplayName("findMostRecentIdByUserId should return the most recent connection, from both sides")
+    void findMostRecentIdByUserId_shouldReturn_mostRecentConnection() {
+        //GIVEN a connection initialized by a user, then a more recent one received by them
+        User otherUser = userRepository.save(new User(null, "ghi@email.com", "ffdsf45", "Jim", "Doe",
+                                                      new BigDecimal(150), new ArrayList<>(), new ArrayList<>(),
+                                                      new ArrayList<>(), new ArrayList<>()));
+        connectionRepository.save(new Connection(null, initializer, receiver, LOCAL_DATE_NOW.minusDays(1)));
+        Connection mostRecent = connectionRepository.save(new Connection(null, otherUser, initializer,
+                                                                         LOCAL_DATE_NOW));
+        // WHEN finding the most recent connection of the user
+        Optional<Integer> id = connectionRepository.findMostRecentIdByUserId(initializer.getId());
+        //THEN the received connection is returned
+        assertEquals(Optional.of(mostRecent.getId()), id);
+        assertEquals(otherUser.getEmail(),
+                     connectionRepository.findViewModelById(mostRecent.getId()).orElseThrow().getInitializer()
+                                         .getEmail());
+    }
+
+    @Test
+    @DisplayName("findMostRecentIdByUserId should return an empty Optional when user has no connection")
+    void findMostRecentIdByUserId_shouldReturn_empty() {
+        assertTrue(connectionRepository.findMostRecentIdByUserId(receiver.getId()).isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+package com.paymybuddy.paymybuddy.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.Query;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks with EXPLAIN that the queries reading a user's history from both sides seek the indexes.
+ */
+@DataJpaTest
+class QueryPlanIT {
+    @Autowired
+    EntityManager entityManager;
+
+    @Test
+    @DisplayName("An OR on issuer and payee scans the whole transaction table")
+    void orOnIssuerAndPayee_shouldScan_table() {
+        String plan = explain("SELECT * FROM transaction WHERE fk_issuer_id = :userId OR fk_payee_id = :userId");
+
+        assertTrue(plan.contains("tableScan"));
+    }
+
+    @Test
+    @DisplayName("Paginated user transactions should seek issuer and payee indexes")
+    void findPageIdsByUserId_shouldUse_indexes() {
+        String plan = explain(nativeQuery(TransactionRepository.class, "findPageIdsByUserId"));
+
+        assertSeeks(plan, "FK_ISSUER_ID = 1", "FK_PAYEE_ID = 1");
+    }
+
+    @Test
+    @DisplayName("Most recent user transactions should seek issuer and payee indexes")
+    void findFirstIdsByUserId_shouldUse_indexes() {
+        String plan = explain(nativeQuery(TransactionRepository.class, "findFirstIdsByUserId"));
+
+        assertSeeks(plan, "FK_ISSUER_ID = 1", "FK_PAYEE_ID = 1");
+    }
+
+    @Test
+    @DisplayName("User transactions before a cursor should seek issuer and payee indexes")
+    void findIdsByUserIdBefore_shouldUse_indexes() {
+        String plan = explain(nativeQuery(TransactionRepository.class, "findIdsByUserIdBefore"));
+
+        assertSeeks(plan, "FK_ISSUER_ID = 1", "FK_PAYEE_ID = 1");
+    }
+
+    @Test
+    @DisplayName("No transaction query should read a user's history with an OR on issuer and payee")
+    void transactionQueries_shouldNotUse_orOnUser() {
+        for (Method method : TransactionRepository.class.getMethods()) {
+            Query query = method.getAnnotation(Query.class);
+            if (query != null) {
+                assertFalse(query.value().replaceAll("\\s+", " ").matches("(?i).*= :userId OR .*"), method.getName());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("User buddy ids should seek initializer and receiver indexes")
+    void findBuddyIdsByUserId_shouldUse_indexes() {
+        String plan = explain(nativeQuery(ConnectionRepository.class, "findBuddyIdsByUserId"));
+
+        assertSeeks(plan, "FK_INITIALIZER_ID = 1", "FK_RECEIVER_ID = 1");
+    }
+
+    @Test
+    @DisplayName("Paginated user buddy ids should seek initializer and receiver indexes")
+    void findPageBuddyIdsByUserId_shouldUse_indexes() {
+        String plan = explain(nativeQuery(ConnectionRepository.class, "findPageBuddyIdsByUserId"));
+
+        assertSeeks(plan, "FK_INITIALIZER_ID = 1", "FK_RECEIVER_ID = 1");
+    }
+
+    @Test
+    @DisplayName("Most recent user connection should seek initializer and receiver indexes")
+    void findMostRecentConnectionIdByUserId_shouldUse_indexes() {
+        String plan = explain(nativeQuery(ConnectionRepository.class, "findMostRecentIdByUserId"));
+
+        assertSeeks(plan, "FK_INITIALIZER_ID = 1", "FK_RECEIVER_ID = 1");
+    }
+
+    private static void assertSeeks(String plan, String... indexConditions) {
+        assertFalse(plan.contains("tableScan"), plan);
+        for (String indexCondition : indexConditions) {
+            assertTrue(plan.contains(indexCondition + " */"), plan);
+        }
+    }
+
+    private static String nativeQuery(Class<?> repository, String methodName) {
+        Method method = Arrays.stream(repository.getMethods())
+                              .filter(m -> m.getName().equals(methodName))
+                              .findFirst()
+                              .orElseThrow();
+        return method.getAnnotation(Query.class).value();
+    }
+
+    private String explain(String sql) {
+        String query = sql.replace(":userId", "1")
+                          .replace(":limit", "3")
+                          .replace(":date", "TIMESTAMP '2022-07-18 10:00:00'")
+                          .replace(":id", "5");
+        return entityManager.createNativeQuery("EXPLAIN " + query).getSingleResult().toString();
+    }
+}
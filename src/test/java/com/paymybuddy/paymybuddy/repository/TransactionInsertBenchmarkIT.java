@@ -0,0 +1,131 @@
+package com.paymybuddy.paymybuddy.repository;
+
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * Compares inserting transactions one flush per row, as identity ids forced Hibernate to insert each row on save,
+ * with inserting them with JDBC batches. Throughputs are logged, only the inserted rows and the number of statements
+ * are checked. Not run by the tests, run it with more rows than the default for steadier throughputs:
+ * <pre>
+ * mvn test -Dtest=TransactionInsertBenchmarkIT -Dbenchmark=true -Dbenchmark.rows=100000
+ * </pre>
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+class TransactionInsertBenchmarkIT {
+    private static final int ROWS                    = Integer.getInteger("benchmark.rows", 10_000);
+    private static final int ROWS_PER_DB_TRANSACTION = 1_000;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    EntityManager entityManager;
+
+    private User issuer;
+    private User payee;
+
+    @BeforeEach
+    void init() {
+        issuer = userRepository.save(newUser("issuer.insert@mail.com"));
+        payee = userRepository.save(newUser("payee.insert@mail.com"));
+    }
+
+    @AfterEach
+    void reset() {
+        jdbcTemplate.update("DELETE FROM transaction WHERE fk_issuer_id = ?", issuer.getId());
+        userRepository.deleteAllById(List.of(issuer.getId(), payee.getId()));
+    }
+
+    @Test
+    @DisplayName("Batched inserts should insert all rows, in far fewer statements than rows")
+    void compareRowByRowAndBatchedInserts() {
+        long rowByRow = time(() -> {
+            for (int chunk = 0; chunk < ROWS; chunk += ROWS_PER_DB_TRANSACTION) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int i = 0; i < ROWS_PER_DB_TRANSACTION; i++) {
+                        transactionRepository.save(newTransaction("row by row"));
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                });
+            }
+        });
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long batched = time(() -> {
+            for (int chunk = 0; chunk < ROWS; chunk += ROWS_PER_DB_TRANSACTION) {
+                List<Transaction> transactions = new ArrayList<>();
+                for (int i = 0; i < ROWS_PER_DB_TRANSACTION; i++) {
+                    transactions.add(newTransaction("batched"));
+                }
+                transactionTemplate.executeWithoutResult(status -> transactionRepository.saveAll(transactions));
+            }
+        });
+
+        log.info("Row by row inserts: " + ROWS * 1000L / Math.max(rowByRow, 1) + " rows/s, "
+                 + "batched inserts: " + ROWS * 1000L / Math.max(batched, 1) + " rows/s.");
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transaction WHERE fk_issuer_id = ?",
+                                               Integer.class, issuer.getId())).isEqualTo(2 * ROWS);
+        // one prepared statement per batch of 50 inserts, plus one id block reservation per 50 ids
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(ROWS / 10);
+    }
+
+    private Transaction newTransaction(String description) {
+        return new Transaction(null, issuer, payee, LocalDateTime.now(), BigDecimal.ONE, description);
+    }
+
+    private static long time(Runnable inserts) {
+        long startTime = System.nanoTime();
+        inserts.run();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName("Firstname");
+        user.setLastName("Lastname");
+        user.setPassword("password");
+        user.setBalance(BigDecimal.ZERO);
+        return user;
+    }
+}
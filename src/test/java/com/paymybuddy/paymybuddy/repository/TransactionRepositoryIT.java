@@ -2,6 +2,7 @@ package com.paymybuddy.paymybuddy.repository;
 
 import com.paymybuddy.paymybuddy.model.Transaction;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -9,6 +10,8 @@ import org.junit.jupiter.api.TestInstance;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
 import java.time.Clock;
@@ -18,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
@@ -116,4 +120,52 @@ class TransactionRepositoryIT {
         //THEn the transaction should not be found
         assertTrue(transactionRepository.findById(transactionToDelete.getId()).isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("findPageIdsByUserId should return one page of transactions, most recent first")
+    void findPageIdsByUserId_shouldReturn_mostRecentFirst() {
+        //GIVEN five transactions on consecutive days
+        List<Integer> ids = new ArrayList<>();
+        for (int day = 0; day < 5; day++) {
+            Transaction dailyTransaction = new Transaction(null, issuer, payee, LOCAL_DATE_NOW.plusDays(day),
+                                                           new BigDecimal(day + 1), "day " + day);
+            ids.add(transactionRepository.save(dailyTransaction).getId());
+        }
+        // WHEN fetching the first page of two transactions
+        Page<Integer> page = transactionRepository.findPageIdsByUserId(payee.getId(), PageRequest.of(0, 2));
+        //THEN only two transactions are returned, the most recent one first
+        assertEquals(List.of(ids.get(4), ids.get(3)), page.getContent());
+        assertEquals(5, page.getTotalElements());
+    }
+
+    @Test
+    @DisplayName("findIdsByUserIdBefore should only return transactions older than the cursor")
+    void findIdsByUserIdBefore_shouldReturn_olderTransactions() {
+        //GIVEN three transactions with the same date
+        List<Transaction> saved = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            saved.add(transactionRepository.save(new Transaction(null, issuer, payee, LOCAL_DATE_NOW,
+                                                                 new BigDecimal(i + 1), "same date " + i)));
+        }
+        Transaction last = saved.get(2);
+        // WHEN seeking the transactions after the most recent one
+        List<Integer> older = transactionRepository.findIdsByUserIdBefore(issuer.getId(), last.getDate(),
+                                                                          last.getId(), 10);
+        //THEN the ties on date are broken by id
+        assertEquals(List.of(saved.get(1).getId(), saved.get(0).getId()), older);
+    }
+
+    @Test
+    @DisplayName("findViewModelsByIdIn should read transactions with their issuer and payee")
+    void findViewModelsByIdIn_shouldReturn_viewModels() {
+        //GIVEN an existing transaction
+        Transaction savedTransaction = transactionRepository.save(transaction);
+        // WHEN reading it as a view model
+        List<TransactionViewModel> viewModels =
+                transactionRepository.findViewModelsByIdIn(List.of(savedTransaction.getId()));
+        //THEN issuer and payee are filled
+        assertEquals(1, viewModels.size());
+        assertEquals(issuer.getEmail(), viewModels.get(0).getIssuer().getEmail());
+        assertEquals(payee.getFirstName(), viewModels.get(0).getPayee().getFirstname());
+    }
+}
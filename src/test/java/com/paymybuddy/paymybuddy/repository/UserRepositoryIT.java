@@ -1,17 +1,23 @@
 package com.paymybuddy.paymybuddy.repository;
 
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DataJpaTest
@@ -51,6 +57,17 @@ class UserRepositoryIT {
         assertTrue(user.isPresent());
     }
 
+    @Test
+    @DisplayName("findViewModelsByIdIn should return the existing users as view models")
+    void findViewModelsByIdIn_shouldReturn_existingUsers() {
+        //GIVEN an existing user
+        User saved = userRepository.save(user);
+        // WHEN reading it with an unknown id
+        List<UserViewModel> users = userRepository.findViewModelsByIdIn(List.of(saved.getId(), -1));
+        //THEN only the existing user is found
+        assertEquals(List.of(saved.getEmail()), users.stream().map(UserViewModel :: getEmail).toList());
+    }
+
     @Test
     @DisplayName("findByEmail should return a user when the user exists")
     void findByEmail_shouldReturn_aUser() {
@@ -85,4 +102,23 @@ class UserRepositoryIT {
         //THEn the user should not be found
         assertTrue(userRepository.findById(userToDelete.getId()).isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("streamViewModelsAfter should stream one page of the users after the given id, in id order")
+    void streamViewModelsAfter_shouldReturn_followingPage() {
+        //GIVEN three users
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(userRepository.save(new User(null, "stream" + i + "@mail.com", "password", "Stream", "User",
+                                                 BigDecimal.ZERO, new ArrayList<>(), new ArrayList<>(),
+                                                 new ArrayList<>(), new ArrayList<>())).getId());
+        }
+        // WHEN streaming a page of one user after the first one
+        List<Integer> page;
+        try (Stream<UserViewModel> users = userRepository.streamViewModelsAfter(ids.get(0), PageRequest.of(0, 1))) {
+            page = users.map(UserViewModel :: getId).toList();
+        }
+        //THEN only the second user is read
+        assertEquals(List.of(ids.get(1)), page);
+    }
+}
@@ -0,0 +1,167 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * Runs balance changes from many threads on the same users and checks that no update is lost and no balance is
+ * overdrawn.
+ */
+@SpringBootTest
+class BalanceConcurrencyIT {
+    private static final int THREADS    = 8;
+    private static final int OPERATIONS = 200;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ConnectionRepository connectionRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    private User       issuer;
+    private User       payee;
+    private Connection connection;
+
+    @BeforeEach
+    void init() {
+        issuer = userService.createUser(newUser("issuer.concurrency@mail.com"));
+        payee = userService.createUser(newUser("payee.concurrency@mail.com"));
+        connection = connectionRepository.save(new Connection(null, issuer, payee, LocalDateTime.now()));
+    }
+
+    @AfterEach
+    void reset() {
+        transactionRepository.deleteAll(transactionRepository.findByIssuer(issuer));
+        connectionRepository.delete(connection);
+        userRepository.deleteAllById(List.of(issuer.getId(), payee.getId()));
+    }
+
+    @Test
+    @DisplayName("Concurrent deposits and withdrawals should not lose any update")
+    void concurrentDepositsAndWithdrawals_shouldNotLose_updates() throws Exception {
+        userService.deposit(issuer, "1000");
+
+        runConcurrently(i -> {
+            // each thread works on its own copy of the user, as concurrent requests would
+            User user = userRepository.findById(issuer.getId()).orElseThrow();
+            if (i % 2 == 0) {
+                userService.deposit(user, "3");
+            } else {
+                userService.withdraw(user, "1");
+            }
+        });
+
+        // 1000 + 100 deposits of 3 - 100 withdrawals of 1
+        assertThat(balanceOf(issuer)).isEqualTo(new BigDecimal("1200.00"));
+    }
+
+    @Test
+    @DisplayName("Concurrent withdrawals should never overdraw the balance")
+    void concurrentWithdrawals_shouldNotOverdraw_balance() throws Exception {
+        userService.deposit(issuer, "500");
+        AtomicInteger refused = new AtomicInteger();
+
+        runConcurrently(i -> {
+            User user = userRepository.findById(issuer.getId()).orElseThrow();
+            try {
+                userService.withdraw(user, "10");
+            } catch (InsufficientBalanceException e) {
+                refused.incrementAndGet();
+            }
+        });
+
+        assertThat(balanceOf(issuer)).isEqualTo(new BigDecimal("0.00"));
+        assertThat(refused.get()).isEqualTo(OPERATIONS - 50);
+    }
+
+    @Test
+    @DisplayName("Concurrent payments should move exactly the paid amounts")
+    void concurrentPayments_shouldMove_exactAmounts() throws Exception {
+        userService.deposit(issuer, "1000");
+        AtomicInteger refused = new AtomicInteger();
+
+        runConcurrently(i -> transactionTemplate.executeWithoutResult(status -> {
+            User from = userRepository.findById(issuer.getId()).orElseThrow();
+            User to   = userRepository.findById(payee.getId()).orElseThrow();
+            try {
+                transactionService.createTransaction(from, to, "payment " + i, Money.valueOf("10"));
+            } catch (InsufficientBalanceException e) {
+                refused.incrementAndGet();
+                status.setRollbackOnly();
+            }
+        }));
+
+        // each payment of 10 costs 10.05 with fee, so the 1000 cover 99 payments
+        int paid = OPERATIONS - refused.get();
+        assertThat(paid).isEqualTo(99);
+        assertThat(balanceOf(issuer)).isEqualTo(new BigDecimal("5.05"));
+        assertThat(balanceOf(payee)).isEqualTo(new BigDecimal("990.00"));
+        assertThat(transactionRepository.findByIssuer(issuer).size()).isEqualTo(paid);
+    }
+
+    private void runConcurrently(IntConsumer operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch  start    = new CountDownLatch(1);
+        List<Future<?>> futures  = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int operationIndex = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                operation.accept(operationIndex);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private BigDecimal balanceOf(User user) {
+        return userRepository.findById(user.getId()).orElseThrow().getBalance();
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName("Firstname");
+        user.setLastName("Lastname");
+        user.setPassword("password");
+        return user;
+    }
+}
@@ -0,0 +1,213 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.BalanceSnapshot;
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.BalanceSnapshotRepository;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.JobLockRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+/**
+ * Takes balance snapshots after real money movements, then verifies balances from the snapshots.
+ */
+@SpringBootTest(properties = "paymybuddy.snapshot.settle-seconds=0")
+class BalanceSnapshotServiceIT {
+    private static final String INSERT_ENTRY = "INSERT INTO ledger_entry "
+            + "(ledger_entry_id, account, user_id, debit, credit, date) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    BalanceSnapshotService balanceSnapshotService;
+
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ConnectionRepository connectionRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    JobLockRepository jobLockRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    Clock clock;
+
+    private User       issuer;
+    private User       payee;
+    private Connection connection;
+
+    /**
+     * Advance of the clock, kept between tests since their snapshots are too.
+     */
+    private static Duration offset = Duration.ZERO;
+
+    @BeforeEach
+    void init() {
+        when(clock.instant()).thenAnswer(invocation -> Instant.now().plus(offset));
+        when(clock.getZone()).thenReturn(ZoneId.systemDefault());
+        issuer = userService.createUser(newUser("issuer.snapshot@mail.com"));
+        payee = userService.createUser(newUser("payee.snapshot@mail.com"));
+        connection = connectionRepository.save(new Connection(null, issuer, payee, LocalDateTime.now()));
+        userService.deposit(issuer, "200");
+        transactionService.createTransaction(issuer, payee, "snapshot", Money.valueOf("100"));
+    }
+
+    @AfterEach
+    void reset() {
+        transactionRepository.deleteAll(transactionRepository.findByIssuer(issuer));
+        connectionRepository.delete(connection);
+        userRepository.deleteAllById(List.of(issuer.getId(), payee.getId()));
+    }
+
+    @Test
+    @DisplayName("Ledger balances should be the snapshot plus the entries written after it")
+    void takeSnapshots_shouldCheckpoint_balances() {
+        assertThat(takeSettledSnapshots()).isGreaterThanOrEqualTo(2);
+        assertThat(latestSnapshot(issuer).getBalance()).isEqualByComparingTo(new BigDecimal("99.50"));
+        assertThat(latestSnapshot(payee).getBalance()).isEqualByComparingTo(new BigDecimal("100.00"));
+
+        userService.withdraw(payee, "40");
+
+        // the withdrawal is after the mark, so it is added to the snapshot
+        assertThat(latestSnapshot(payee).getBalance()).isEqualByComparingTo(new BigDecimal("100.00"));
+        assertThat(ledgerService.getUserBalance(payee.getId())).isEqualByComparingTo(new BigDecimal("60.00"));
+        // a run without new entry for the issuer keeps their snapshot
+        takeSettledSnapshots();
+        assertThat(latestSnapshot(payee).getBalance()).isEqualByComparingTo(new BigDecimal("60.00"));
+        assertThat(latestSnapshot(issuer).getBalance()).isEqualByComparingTo(new BigDecimal("99.50"));
+        assertThat(balanceSnapshotService.verifyBalances()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("An entry committed after a run with an id below the entries it snapshotted should be in the next run")
+    void takeSnapshots_withLateEntry_shouldFold_itIntoNextRun() {
+        takeSettledSnapshots();
+        // a deposit numbered before the snapshotted entries, dated within the settle delay and committed only now
+        Integer       lowestId = jdbcTemplate.queryForObject("SELECT MIN(ledger_entry_id) FROM ledger_entry",
+                                                             Integer.class);
+        LocalDateTime date     = LocalDateTime.now(clock);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(INSERT_ENTRY, lowestId - 2, "BANK", payee.getId(), new BigDecimal("5.00"),
+                                BigDecimal.ZERO, date);
+            jdbcTemplate.update(INSERT_ENTRY, lowestId - 1, "USER", payee.getId(), BigDecimal.ZERO,
+                                new BigDecimal("5.00"), date);
+            userRepository.creditBalance(payee.getId(), new BigDecimal("5.00"));
+        });
+
+        takeSettledSnapshots();
+
+        assertThat(latestSnapshot(payee).getBalance()).isEqualByComparingTo(new BigDecimal("105.00"));
+        assertThat(balanceSnapshotService.verifyBalances()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("A balance changed without ledger entry should be reported")
+    void verifyBalances_shouldReport_balanceNotInLedger() {
+        double mismatchesBefore = meterRegistry.get("balance.mismatches").counter().count();
+        takeSettledSnapshots();
+
+        // credited behind the ledger's back
+        transactionTemplate.executeWithoutResult(
+                status -> userRepository.creditBalance(issuer.getId(), new BigDecimal("5.00")));
+
+        assertThat(balanceSnapshotService.verifyBalances()).isEqualTo(1);
+        assertThat(meterRegistry.get("balance.mismatches").counter().count() - mismatchesBefore).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("A user should not be snapshotted twice at the same mark")
+    void snapshot_atSameMark_shouldBe_refused() {
+        takeSettledSnapshots();
+        BalanceSnapshot snapshot = latestSnapshot(issuer);
+
+        assertThrows(DataIntegrityViolationException.class, () -> balanceSnapshotRepository.save(
+                new BalanceSnapshot(null, issuer.getId(), snapshot.getBalance(), snapshot.getEntriesBefore(),
+                                    LocalDateTime.now())));
+    }
+
+    @Test
+    @DisplayName("The scheduled job should be skipped while leased by another instance, then run")
+    void snapshotAndVerify_whileLeased_shouldSkip() {
+        LocalDateTime now    = LocalDateTime.now().withNano(0);
+        LocalDateTime until  = now.plusHours(1);
+        Integer       leased = transactionTemplate.execute(
+                status -> jobLockRepository.lock(BalanceSnapshotService.JOB_NAME, now, until));
+        assertThat(leased).isEqualTo(1);
+
+        assertThat(balanceSnapshotService.snapshotAndVerify()).isFalse();
+
+        transactionTemplate.execute(status -> jobLockRepository.unlock(BalanceSnapshotService.JOB_NAME, until, now));
+        assertThat(balanceSnapshotService.snapshotAndVerify()).isTrue();
+        // the lease was ended by the run
+        assertThat(balanceSnapshotService.snapshotAndVerify()).isTrue();
+    }
+
+    /**
+     * Moves the clock past the settle delay, so that the entries written so far are snapshotted.
+     */
+    private int takeSettledSnapshots() {
+        offset = offset.plusSeconds(1);
+        return balanceSnapshotService.takeSnapshots();
+    }
+
+    private BalanceSnapshot latestSnapshot(User user) {
+        return balanceSnapshotRepository.findFirstByUserIdOrderByEntriesBeforeDesc(user.getId()).orElseThrow();
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName("Firstname");
+        user.setLastName("Lastname");
+        user.setPassword("password");
+        return user;
+    }
+}
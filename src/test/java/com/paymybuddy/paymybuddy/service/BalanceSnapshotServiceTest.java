@@ -0,0 +1,155 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.BalanceSnapshot;
+import com.paymybuddy.paymybuddy.model.LedgerEntry;
+import com.paymybuddy.paymybuddy.repository.BalanceSnapshotRepository;
+import com.paymybuddy.paymybuddy.repository.JobLockRepository;
+import com.paymybuddy.paymybuddy.repository.LedgerEntryRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@Import({BalanceSnapshotService.class, SimpleMeterRegistry.class})
+class BalanceSnapshotServiceTest {
+    /**
+     * Class under test.
+     */
+    @Autowired
+    BalanceSnapshotService balanceSnapshotService;
+
+    @MockBean
+    LedgerEntryRepository ledgerEntryRepository;
+
+    @MockBean
+    BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @MockBean
+    UserRepository userRepository;
+
+    @MockBean
+    JobLockRepository jobLockRepository;
+
+    @MockBean
+    LedgerService ledgerService;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @MockBean
+    Clock clock;
+
+    @BeforeEach
+    void setup() {
+        when(clock.instant()).thenReturn(Instant.parse("2022-07-18T10:00:00Z"));
+        when(clock.getZone()).thenReturn(ZoneId.of("UTC"));
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    @DisplayName("Snapshots should add the entries since the last mark to the previous snapshots")
+    @SuppressWarnings("unchecked")
+    void takeSnapshots_shouldAdd_changesToPreviousSnapshots() {
+        LocalDateTime mark = LocalDateTime.parse("2022-07-17T09:59:00");
+        // the clock is at 10:00:00 and entries settle for 60 seconds
+        LocalDateTime upTo = LocalDateTime.parse("2022-07-18T09:59:00");
+        when(balanceSnapshotRepository.findHighWaterMark()).thenReturn(mark);
+        when(ledgerEntryRepository.sumByAccountBetween(LedgerEntry.Account.USER, mark, upTo))
+                .thenReturn(List.of(change(1, "-20.00"), change(2, "30.00")));
+        when(balanceSnapshotRepository.findLatestByUserIdIn(anyCollection()))
+                .thenReturn(List.of(new BalanceSnapshot(4, 1, new BigDecimal("50.00"), mark, null)));
+
+        assertThat(balanceSnapshotService.takeSnapshots()).isEqualTo(2);
+
+        ArgumentCaptor<List<BalanceSnapshot>> captor = ArgumentCaptor.forClass(List.class);
+        verify(balanceSnapshotRepository).saveAll(captor.capture());
+        List<BalanceSnapshot> snapshots = captor.getValue();
+        assertThat(snapshots.get(0).getBalance()).isEqualTo(new BigDecimal("30.00"));
+        assertThat(snapshots.get(1).getBalance()).isEqualTo(new BigDecimal("30.00"));
+        assertThat(snapshots.get(0).getEntriesBefore()).isEqualTo(upTo);
+    }
+
+    @Test
+    @DisplayName("The first snapshots should sum all entries settled")
+    void takeSnapshots_withoutPreviousSnapshot_shouldSum_allEntries() {
+        when(ledgerEntryRepository.sumByAccountBetween(LedgerEntry.Account.USER, BalanceSnapshot.NO_SNAPSHOT,
+                                                        LocalDateTime.parse("2022-07-18T09:59:00")))
+                .thenReturn(List.of(change(1, "20.00")));
+
+        assertThat(balanceSnapshotService.takeSnapshots()).isEqualTo(1);
+        verify(balanceSnapshotRepository).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Snapshots should not be taken again before the entries since the last mark settle")
+    void takeSnapshots_withoutNewEntries_shouldNotSave() {
+        when(balanceSnapshotRepository.findHighWaterMark()).thenReturn(LocalDateTime.parse("2022-07-18T09:59:00"));
+
+        assertThat(balanceSnapshotService.takeSnapshots()).isEqualTo(0);
+        verify(ledgerEntryRepository, never()).sumByAccountBetween(any(), any(), any());
+        verify(balanceSnapshotRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("The scheduled job should run under its lease, then end it")
+    void snapshotAndVerify_withLease_shouldRun_andUnlock() {
+        LocalDateTime until = LocalDateTime.parse("2022-07-18T11:00:00");
+        when(jobLockRepository.lock(eq(BalanceSnapshotService.JOB_NAME), any(), eq(until))).thenReturn(1);
+        when(balanceSnapshotRepository.findHighWaterMark()).thenReturn(LocalDateTime.parse("2022-07-18T09:59:00"));
+        when(userRepository.findIdsAfter(any(), any())).thenReturn(List.of());
+
+        assertThat(balanceSnapshotService.snapshotAndVerify()).isTrue();
+
+        verify(balanceSnapshotRepository).findHighWaterMark();
+        verify(jobLockRepository).unlock(eq(BalanceSnapshotService.JOB_NAME), eq(until), any());
+    }
+
+    @Test
+    @DisplayName("The scheduled job should be skipped while another instance holds its lease")
+    void snapshotAndVerify_leasedElsewhere_shouldSkip() {
+        when(jobLockRepository.lock(any(), any(), any())).thenReturn(0);
+
+        assertThat(balanceSnapshotService.snapshotAndVerify()).isFalse();
+
+        verifyNoInteractions(ledgerEntryRepository, userRepository);
+        verify(jobLockRepository, never()).unlock(any(), any(), any());
+    }
+
+    private static LedgerEntryRepository.UserAmount change(Integer userId, String amount) {
+        return new LedgerEntryRepository.UserAmount() {
+            @Override
+            public Integer getUserId() {
+                return userId;
+            }
+
+            @Override
+            public BigDecimal getAmount() {
+                return new BigDecimal(amount);
+            }
+        };
+    }
+}
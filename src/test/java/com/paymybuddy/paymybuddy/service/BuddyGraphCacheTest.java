@@ -0,0 +1,134 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@Import(SimpleMeterRegistry.class)
+class BuddyGraphCacheTest {
+    /**
+     * Class under test.
+     */
+    private BuddyGraphCache buddyGraphCache;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @MockBean
+    ConnectionRepository connectionRepository;
+
+    @BeforeEach
+    void setup() {
+        buddyGraphCache = new BuddyGraphCache(connectionRepository, meterRegistry, 1000, 600);
+        when(connectionRepository.findBuddyIdsByUserId(1)).thenReturn(List.of(4, 2));
+    }
+
+    @Test
+    @DisplayName("Buddies should be read from the database once, then from the cache")
+    void areBuddies_shouldLoad_buddiesOnce() {
+        double hitsBefore   = gets("hit");
+        double missesBefore = gets("miss");
+
+        assertTrue(buddyGraphCache.areBuddies(1, 2));
+        assertTrue(buddyGraphCache.areBuddies(1, 4));
+        assertFalse(buddyGraphCache.areBuddies(1, 3));
+
+        verify(connectionRepository, times(1)).findBuddyIdsByUserId(1);
+        assertEquals(1, gets("miss") - missesBefore);
+        assertEquals(2, gets("hit") - hitsBefore);
+    }
+
+    @Test
+    @DisplayName("A connection saved without transaction should be added to both cached users")
+    void connectionSaved_shouldAdd_buddyToCachedUsers() {
+        when(connectionRepository.findBuddyIdsByUserId(3)).thenReturn(List.of());
+        buddyGraphCache.getBuddyIds(1);
+        buddyGraphCache.getBuddyIds(3);
+
+        buddyGraphCache.connectionSaved(3, 1);
+
+        assertArrayEquals(new int[]{2, 3, 4}, buddyGraphCache.getBuddyIds(1));
+        assertArrayEquals(new int[]{1}, buddyGraphCache.getBuddyIds(3));
+        verify(connectionRepository, times(1)).findBuddyIdsByUserId(1);
+        verify(connectionRepository, times(1)).findBuddyIdsByUserId(3);
+    }
+
+    @Test
+    @DisplayName("A connection saved in a transaction should only be added after commit")
+    void connectionSaved_inTransaction_shouldWait_forCommit() {
+        buddyGraphCache.getBuddyIds(1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            buddyGraphCache.connectionSaved(1, 3);
+            assertFalse(buddyGraphCache.areBuddies(1, 3));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization :: afterCommit);
+            assertTrue(buddyGraphCache.areBuddies(1, 3));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Buddies read while a connection is committed should not be cached")
+    void getBuddyIds_whileConnectionSaved_shouldNotCache() {
+        when(connectionRepository.findBuddyIdsByUserId(1)).thenAnswer(invocation -> {
+            buddyGraphCache.connectionSaved(1, 5);
+            return List.of(2, 4);
+        });
+
+        buddyGraphCache.getBuddyIds(1);
+        buddyGraphCache.getBuddyIds(1);
+
+        verify(connectionRepository, times(2)).findBuddyIdsByUserId(1);
+    }
+
+    @Test
+    @DisplayName("Users connected by another instance should be found in the database, then read again")
+    void areBuddies_connectedElsewhere_shouldCheck_database() {
+        buddyGraphCache.getBuddyIds(1);
+        when(connectionRepository.existsConnectionBetween(1, 5)).thenReturn(true);
+        when(connectionRepository.findBuddyIdsByUserId(1)).thenReturn(List.of(2, 4, 5));
+
+        assertTrue(buddyGraphCache.areBuddies(1, 5));
+
+        assertArrayEquals(new int[]{2, 4, 5}, buddyGraphCache.getBuddyIds(1));
+        verify(connectionRepository, times(2)).findBuddyIdsByUserId(1);
+    }
+
+    @Test
+    @DisplayName("Least used users should be evicted past the maximum size")
+    void getBuddyIds_pastMaxSize_shouldEvict_users() {
+        buddyGraphCache = new BuddyGraphCache(connectionRepository, meterRegistry, 1, 600);
+        when(connectionRepository.findBuddyIdsByUserId(3)).thenReturn(List.of());
+
+        buddyGraphCache.getBuddyIds(1);
+        buddyGraphCache.getBuddyIds(3);
+        buddyGraphCache.getBuddyIds(1);
+        buddyGraphCache.getBuddyIds(3);
+
+        // one of both users was evicted, then read again
+        int loads = mockingDetails(connectionRepository).getInvocations().size();
+        assertTrue(loads >= 3, loads + " loads");
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "buddyGraph").tag("result", result).counter().count();
+    }
+}
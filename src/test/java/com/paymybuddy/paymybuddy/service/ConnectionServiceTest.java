@@ -8,11 +8,16 @@ import com.paymybuddy.paymybuddy.model.viewmodel.ConnectionViewModel;
 import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
 import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
 import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.math.BigDecimal;
@@ -22,10 +27,12 @@ import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
@@ -50,6 +57,9 @@ class ConnectionServiceTest {
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    BuddyGraphCache buddyGraphCache;
+
     private User initializer;
     private User receiver;
 
@@ -101,17 +111,53 @@ class ConnectionServiceTest {
                                  new ArrayList<>(),
                                  new ArrayList<>());
 
-        Connection connection1 = new Connection(1, testUser, receiver, LocalDateTime.now(clock));
-        Connection connection2 = new Connection(2, initializer, testUser, LocalDateTime.now(clock));
-        when(connectionRepository.findByInitializerOrReceiver(any(User.class), any(User.class)))
-                .thenReturn(List.of(connection1, connection2));
+        when(buddyGraphCache.getBuddyIds(testUser.getId())).thenReturn(new int[]{initializer.getId(), receiver.getId()});
+        when(userRepository.findViewModelsByIdIn(List.of(initializer.getId(), receiver.getId())))
+                .thenReturn(List.of(UserService.userToViewModel(receiver), UserService.userToViewModel(initializer)));
 
         // WHEN getting connections from testUser
         List<UserViewModel> userConnections = connectionService.getUserConnections(testUser);
 
-        // THEN testUser should have two connections, one they initiated and one they received
-        assertTrue(userConnections.contains(UserService.userToViewModel(receiver)));
-        assertTrue(userConnections.contains(UserService.userToViewModel(initializer)));
+        // THEN testUser should have two connections, one they initiated and one they received, in buddy id order
+        assertEquals(List.of(UserService.userToViewModel(initializer), UserService.userToViewModel(receiver)),
+                     userConnections);
+    }
+
+    @Test
+    @DisplayName("getUserConnections should only query connections the first time, then read the buddy graph cache")
+    void getUserConnections_twice_shouldQuery_connectionsOnce() {
+        BuddyGraphCache mockedCache = connectionService.buddyGraphCache;
+        connectionService.buddyGraphCache = new BuddyGraphCache(connectionRepository, new SimpleMeterRegistry(),
+                                                                1000, 600);
+        try {
+            when(connectionRepository.findBuddyIdsByUserId(initializer.getId())).thenReturn(List.of(receiver.getId()));
+            when(userRepository.findViewModelsByIdIn(List.of(receiver.getId())))
+                    .thenReturn(List.of(UserService.userToViewModel(receiver)));
+
+            connectionService.getUserConnections(initializer);
+            List<UserViewModel> userConnections = connectionService.getUserConnections(initializer);
+
+            assertEquals(List.of(UserService.userToViewModel(receiver)), userConnections);
+            verify(connectionRepository, times(1)).findBuddyIdsByUserId(initializer.getId());
+        } finally {
+            connectionService.buddyGraphCache = mockedCache;
+        }
+    }
+
+    @Test
+    @DisplayName("getPaginatedUserConnections should only read the requested page of buddies")
+    void getPaginatedUserConnections_shouldRead_requestedPageOnly() {
+        PageRequest pageRequest = PageRequest.of(1, 1);
+        when(connectionRepository.findPageBuddyIdsByUserId(initializer.getId(), pageRequest))
+                .thenReturn(new PageImpl<>(List.of(receiver.getId()), pageRequest, 3));
+        when(userRepository.findViewModelsByIdIn(List.of(receiver.getId())))
+                .thenReturn(List.of(UserService.userToViewModel(receiver)));
+
+        Page<UserViewModel> page = connectionService.getPaginatedUserConnections(pageRequest, initializer);
+
+        assertEquals(List.of(UserService.userToViewModel(receiver)), page.getContent());
+        assertEquals(3, page.getTotalElements());
+        verify(buddyGraphCache, never()).getBuddyIds(anyInt());
     }
 
     @Test
@@ -136,23 +182,18 @@ class ConnectionServiceTest {
     void addConnection_shouldConnect_initializerAndReceiver() {
         String email = "tribbianijoey@friends.com";
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(receiver));
+        ArgumentCaptor<Connection> saved = ArgumentCaptor.forClass(Connection.class);
 
         connectionService.createConnectionBetweenTwoUsers(initializer, email);
 
-        // Assert both initializer and receiver have a connection in which they appear as such
-        assertThat(initializer.getInitializedConnections()
-                              .stream()
-                              .filter(connection -> connection.getInitializer().equals(initializer)
-                                                    && connection.getReceiver().equals(receiver))).isNotNull();
-        assertThat(receiver.getReceivedConnections()
-                           .stream()
-                           .filter(connection -> connection.getInitializer().equals(initializer)
-                                                 && connection.getReceiver().equals(receiver))).isNotNull();
+        verify(connectionRepository, times(1)).save(saved.capture());
+        assertThat(saved.getValue().getInitializer()).isEqualTo(initializer);
+        assertThat(saved.getValue().getReceiver()).isEqualTo(receiver);
     }
 
     @Test
-    @DisplayName("Adding a connection should add a connection to initializer's list of initiated connections")
-    void addConnection_shouldAdd_connectionToInitializedConnections() {
+    @DisplayName("Adding a connection should not add it to initializer's list of initiated connections")
+    void addConnection_shouldNotAdd_connectionToInitializedConnections() {
         String email = "tribbianijoey@friends.com";
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(receiver));
 
@@ -160,12 +201,12 @@ class ConnectionServiceTest {
 
         connectionService.createConnectionBetweenTwoUsers(initializer, email);
 
-        assertThat(initializer.getInitializedConnections().size()).isEqualTo(initiatedConnectionsSizeBefore + 1);
+        assertThat(initializer.getInitializedConnections().size()).isEqualTo(initiatedConnectionsSizeBefore);
     }
 
     @Test
-    @DisplayName("Adding a connection should add a connection to receiver's list of received connections")
-    void addConnection_shouldAdd_connectionToReceivedConnections() {
+    @DisplayName("Adding a connection should not add it to receiver's list of received connections")
+    void addConnection_shouldNotAdd_connectionToReceivedConnections() {
         String email = "tribbianijoey@friends.com";
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(receiver));
 
@@ -173,7 +214,7 @@ class ConnectionServiceTest {
 
         connectionService.createConnectionBetweenTwoUsers(initializer, email);
 
-        assertThat(receiver.getReceivedConnections().size()).isEqualTo(receivedConnectionsSizeBefore + 1);
+        assertThat(receiver.getReceivedConnections().size()).isEqualTo(receivedConnectionsSizeBefore);
         verify(connectionRepository, times(1)).save(any(Connection.class));
     }
 
@@ -192,21 +233,19 @@ class ConnectionServiceTest {
     void addConnection_withConflict_shouldThrow_exception() {
         String email = "tribbianijoey@friends.com";
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(receiver));
-        Connection existingConnection = new Connection(null, initializer, receiver, LocalDateTime.now(clock));
-        when(connectionRepository
-                     .findByInitializerOrReceiver(any(User.class), any(User.class)))
-                .thenReturn(List.of(existingConnection));
+        when(connectionRepository.existsConnectionBetween(initializer.getId(), receiver.getId())).thenReturn(true);
 
         assertThrows(AlreadyABuddyException.class,
                      () -> connectionService.createConnectionBetweenTwoUsers(initializer, email));
     }
 
     @Test
-    @DisplayName("getConnections should return a list of ConnectionViewModels")
-    void getConnections_shouldReturn_listOfConnectionViewModels() {
-        when(connectionRepository.findAll()).thenReturn(List.of(connection));
+    @DisplayName("streamConnections should stream at least one connection per page")
+    void streamConnections_shouldReturn_connectionViewModels() {
+        when(connectionRepository.streamViewModelsAfter(0, PageRequest.of(0, 1)))
+                .thenReturn(Stream.of(ConnectionService.connectionToViewModel(connection)));
 
-        List<ConnectionViewModel> result = connectionService.getConnections();
+        List<ConnectionViewModel> result = connectionService.streamConnections(0, 0).toList();
 
         assertTrue(result.contains(ConnectionService.connectionToViewModel(connection)));
     }
@@ -214,7 +253,8 @@ class ConnectionServiceTest {
     @Test
     @DisplayName("getConnectionById should return a connection when exists")
     void getConnectionById() {
-        when(connectionRepository.findById(connection.getId())).thenReturn(Optional.ofNullable(connection));
+        when(connectionRepository.findViewModelById(connection.getId()))
+                .thenReturn(Optional.of(ConnectionService.connectionToViewModel(connection)));
         Optional<ConnectionViewModel> connectionViewModel = connectionService.getConnectionById(connection.getId());
 
         assertEquals(connectionViewModel, Optional.of(ConnectionService.connectionToViewModel(connection)));
@@ -223,12 +263,33 @@ class ConnectionServiceTest {
     @Test
     @DisplayName("getConnectionById should returnempty optional when connection does not exist")
     void getConnectionById_empty() {
-        when(connectionRepository.findById(connection.getId())).thenReturn(Optional.empty());
+        when(connectionRepository.findViewModelById(connection.getId())).thenReturn(Optional.empty());
         Optional<ConnectionViewModel> connectionViewModel = connectionService.getConnectionById(connection.getId());
 
         assertTrue(connectionViewModel.isEmpty());
     }
 
+    @Test
+    @DisplayName("getMostRecentUserConnection should read the most recent connection only")
+    void getMostRecentUserConnection() {
+        ConnectionViewModel connectionViewModel = ConnectionService.connectionToViewModel(connection);
+        when(connectionRepository.findMostRecentIdByUserId(initializer.getId()))
+                .thenReturn(Optional.of(connection.getId()));
+        when(connectionRepository.findViewModelById(connection.getId())).thenReturn(Optional.of(connectionViewModel));
+
+        assertEquals(Optional.of(connectionViewModel), connectionService.getMostRecentUserConnection(initializer));
+        verify(connectionRepository, never()).findAll();
+    }
+
+    @Test
+    @DisplayName("getMostRecentUserConnection should return empty optional when user has no connection")
+    void getMostRecentUserConnection_empty() {
+        when(connectionRepository.findMostRecentIdByUserId(initializer.getId())).thenReturn(Optional.empty());
+
+        assertTrue(connectionService.getMostRecentUserConnection(initializer).isEmpty());
+        verify(connectionRepository, never()).findViewModelById(any());
+    }
+
     @Test
     @DisplayName("connectionToViewModel should return correct value")
     void connectionToViewModel() {
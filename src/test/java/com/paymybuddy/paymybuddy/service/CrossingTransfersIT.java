@@ -0,0 +1,115 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * Runs many transfers in both directions between the same two users, with users locked in ascending id order.
+ * No transfer should deadlock or need a retry, and no money should be created or lost apart from fees.
+ */
+@SpringBootTest(properties = "paymybuddy.transfer.mode=ORDERED_LOCKING")
+class CrossingTransfersIT {
+    private static final int THREADS   = 8;
+    private static final int TRANSFERS = 2000;
+
+    @Autowired
+    TransferExecutor transferExecutor;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ConnectionRepository connectionRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private User       first;
+    private User       second;
+    private Connection connection;
+
+    @BeforeEach
+    void init() {
+        first = userService.createUser(newUser("first.crossing@mail.com"));
+        second = userService.createUser(newUser("second.crossing@mail.com"));
+        userService.deposit(first, "10000");
+        userService.deposit(second, "10000");
+        connection = connectionRepository.save(new Connection(null, first, second, LocalDateTime.now()));
+    }
+
+    @AfterEach
+    void reset() {
+        transactionRepository.deleteAll(transactionRepository.findByIssuer(first));
+        transactionRepository.deleteAll(transactionRepository.findByIssuer(second));
+        connectionRepository.delete(connection);
+        userRepository.deleteAllById(List.of(first.getId(), second.getId()));
+    }
+
+    @Test
+    @DisplayName("Crossing transfers should neither deadlock nor lose money")
+    void crossingTransfers_shouldNotDeadlock() throws Exception {
+        double retriesBefore = meterRegistry.get("transfer.retries").counter().count();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch  start    = new CountDownLatch(1);
+        List<Future<?>> futures  = new ArrayList<>();
+        for (int i = 0; i < TRANSFERS; i++) {
+            // even transfers go from first to second, odd ones back
+            User from = i % 2 == 0 ? first : second;
+            User to   = i % 2 == 0 ? second : first;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return transferExecutor.transfer(from.getId(), to.getId(), "crossing", Money.valueOf("1"));
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(meterRegistry.get("transfer.retries").counter().count() - retriesBefore).isEqualTo(0.0);
+        // each user sent and received half of the transfers, and paid a fee of 0.01 for each sent
+        BigDecimal fees = new BigDecimal("0.01").multiply(new BigDecimal(TRANSFERS / 2));
+        assertThat(balanceOf(first)).isEqualTo(new BigDecimal("10000.00").subtract(fees));
+        assertThat(balanceOf(second)).isEqualTo(new BigDecimal("10000.00").subtract(fees));
+    }
+
+    private BigDecimal balanceOf(User user) {
+        return userRepository.findById(user.getId()).orElseThrow().getBalance();
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName("Firstname");
+        user.setLastName("Lastname");
+        user.setPassword("password");
+        return user;
+    }
+}
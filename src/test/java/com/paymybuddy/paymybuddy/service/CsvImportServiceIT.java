@@ -0,0 +1,173 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.ImportCheckpoint;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.ImportCheckpointRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * Imports partner files into the database, then imports them again to check that only new rows are imported.
+ */
+@SpringBootTest
+class CsvImportServiceIT {
+    @Autowired
+    CsvImportService csvImportService;
+
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ConnectionRepository connectionRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    ImportCheckpointRepository importCheckpointRepository;
+
+    @Autowired
+    BCryptPasswordEncoder passwordEncoder;
+
+    @TempDir
+    Path directory;
+
+    private final List<User> imported = new ArrayList<>();
+
+    @AfterEach
+    void reset() {
+        for (User user : imported) {
+            transactionRepository.deleteAll(transactionRepository.findByIssuer(user));
+            connectionRepository.deleteAll(connectionRepository.findByInitializerOrReceiver(user, user));
+        }
+        userRepository.deleteAll(imported);
+    }
+
+    @Test
+    @DisplayName("Users should be imported once, with hashed passwords and their balance in the ledger")
+    void importUsers_shouldImport_newUsersOnly() throws IOException {
+        Path file = Files.writeString(directory.resolve("users.csv"), """
+                email,password,firstname,lastname,balance
+                joey.import@mail.com,sandwich,Joey,Tribbiani,12.50
+                chandler.import@mail.com,sarcasm,Chandler,Bing,0
+                Joey.Import@Mail.com,duplicate,Joey,Tribbiani,1
+                not an email,password,Ross,Geller,1
+                phoebe.import@mail.com,smelly cat,Phoebe
+                """);
+
+        CsvImportService.ImportReport report = csvImportService.importUsers(file);
+
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getSkipped()).isEqualTo(3);
+        User joey = find("joey.import@mail.com");
+        find("chandler.import@mail.com");
+        assertThat(passwordEncoder.matches("sandwich", joey.getPassword())).isTrue();
+        assertThat(joey.getBalance()).isEqualTo(new BigDecimal("12.50"));
+        assertThat(ledgerService.getUserBalance(joey.getId())).isEqualTo(new BigDecimal("12.50"));
+
+        // imported again with a new line, only the new line is imported
+        Files.writeString(file, "monica.import@mail.com,clean,Monica,Geller,5\n", StandardOpenOption.APPEND);
+        report = csvImportService.importUsers(file);
+
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getSkipped()).isEqualTo(5);
+        find("monica.import@mail.com");
+    }
+
+    @Test
+    @DisplayName("An import should resume after its checkpoint on the same file only, and delete it once complete")
+    void importUsers_shouldResume_sameFileOnly() throws IOException {
+        Path file = Files.writeString(directory.resolve("resumed.csv"), """
+                email,password,firstname,lastname,balance
+                gunther.import@mail.com,coffee,Gunther,Central,0
+                janice.import@mail.com,ohmygod,Janice,Hosenstein,0
+                """);
+        String name = CsvImportService.checkpointName("users", file);
+        // the first line was imported by a run that failed afterwards
+        importCheckpointRepository.save(new ImportCheckpoint(name, 1, LocalDateTime.now()));
+
+        assertThat(csvImportService.importUsers(file).getImported()).isEqualTo(1);
+        assertThat(userRepository.findByEmail("gunther.import@mail.com")).isEmpty();
+        find("janice.import@mail.com");
+        assertThat(importCheckpointRepository.findById(name)).isEmpty();
+
+        // another file with the same name is read whole, whatever the checkpoint of the previous one
+        importCheckpointRepository.save(new ImportCheckpoint(name, 1, LocalDateTime.now()));
+        Files.writeString(file, """
+                email,password,firstname,lastname,balance
+                mike.import@mail.com,piano,Mike,Hannigan,0
+                """);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        assertThat(csvImportService.importUsers(file).getImported()).isEqualTo(1);
+        find("mike.import@mail.com");
+        importCheckpointRepository.deleteById(name);
+    }
+
+    @Test
+    @DisplayName("Connections and transactions should be imported between known users only")
+    void importConnectionsAndTransactions_shouldImport_knownUsers() throws IOException {
+        csvImportService.importUsers(Files.writeString(directory.resolve("buddies.csv"), """
+                email,password,firstname,lastname,balance
+                ross.import@MAIL.com,dinosaur,Ross,Geller,0
+                rachel.import@mail.com,fashion,Rachel,Green,0
+                """));
+        User ross   = find("ross.import@mail.com");
+        User rachel = find("rachel.import@mail.com");
+
+        CsvImportService.ImportReport connections = csvImportService.importConnections(
+                Files.writeString(directory.resolve("connections.csv"), """
+                        initializerEmail,receiverEmail,startingDate
+                        Ross.Import@mail.com,rachel.import@mail.com,2020-05-01T10:00:00
+                        RACHEL.import@mail.com,ross.import@mail.com,2020-05-02T10:00:00
+                        ross.import@mail.com,unknown.import@mail.com,2020-05-03T10:00:00
+                        ross.import@mail.com,ross.import@mail.com,2020-05-04T10:00:00
+                        """));
+        CsvImportService.ImportReport transactions = csvImportService.importTransactions(
+                Files.writeString(directory.resolve("transactions.csv"), """
+                        issuerEmail,payeeEmail,date,amount,description
+                        ross.import@mail.com,rachel.import@mail.com,2020-06-01T10:00:00,30,we were on a break, again
+                        rachel.import@mail.com,ross.import@mail.com,2020-06-02T10:00:00,-5,negative
+                        """));
+
+        assertThat(connections.getImported()).isEqualTo(1);
+        assertThat(connections.getSkipped()).isEqualTo(3);
+        assertThat(transactions.getImported()).isEqualTo(1);
+        assertThat(transactions.getSkipped()).isEqualTo(1);
+        assertThat(transactionRepository.findByIssuer(ross).get(0).getDescription())
+                .isEqualTo("we were on a break, again");
+        // history only, balances are unchanged
+        assertThat(find("rachel.import@mail.com").getBalance()).isEqualTo(rachel.getBalance());
+    }
+
+    private User find(String email) {
+        User user = userRepository.findByEmail(email).orElseThrow();
+        if (imported.stream().noneMatch(known -> known.getId().equals(user.getId()))) {
+            imported.add(user);
+        }
+        return user;
+    }
+}
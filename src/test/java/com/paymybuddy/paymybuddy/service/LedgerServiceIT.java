@@ -0,0 +1,124 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.LedgerEntry;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.PaymentViewModel;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.LedgerEntryRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * Checks that deposits, transfers and withdrawals are written to the ledger so that it agrees with user balances.
+ */
+@SpringBootTest
+class LedgerServiceIT {
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    TransferExecutor transferExecutor;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ConnectionRepository connectionRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    LedgerEntryRepository ledgerEntryRepository;
+
+    private User       issuer;
+    private User       payee;
+    private Connection connection;
+
+    @BeforeEach
+    void init() {
+        issuer = userService.createUser(newUser("issuer.ledger@mail.com"));
+        payee = userService.createUser(newUser("payee.ledger@mail.com"));
+        connection = connectionRepository.save(new Connection(null, issuer, payee, LocalDateTime.now()));
+    }
+
+    @AfterEach
+    void reset() {
+        transactionRepository.deleteAll(transactionRepository.findByIssuer(issuer));
+        connectionRepository.delete(connection);
+        userRepository.deleteAllById(List.of(issuer.getId(), payee.getId()));
+    }
+
+    @Test
+    @DisplayName("Ledger balances should match user balances after deposits, transfers and withdrawals")
+    void ledgerBalances_shouldMatch_userBalances() {
+        BigDecimal feesBefore = ledgerService.getPlatformFees();
+
+        userService.deposit(issuer, "200");
+        Transaction transaction = transactionService.createTransaction(issuer, payee, "ledger", Money.valueOf("100"));
+        userService.withdraw(payee, "40");
+
+        assertThat(ledgerService.getUserBalance(issuer.getId())).isEqualByComparingTo(balanceOf(issuer));
+        assertThat(ledgerService.getUserBalance(payee.getId())).isEqualByComparingTo(balanceOf(payee));
+        assertThat(balanceOf(issuer)).isEqualByComparingTo(new BigDecimal("99.50"));
+        assertThat(balanceOf(payee)).isEqualByComparingTo(new BigDecimal("60.00"));
+        assertThat(ledgerService.getPlatformFees().subtract(feesBefore)).isEqualByComparingTo(new BigDecimal("0.50"));
+
+        // the transfer's debits and credits balance
+        List<LedgerEntry> entries = ledgerEntryRepository.findByTransactionId(transaction.getId());
+        BigDecimal debits  = entries.stream().map(LedgerEntry :: getDebit).reduce(BigDecimal.ZERO, BigDecimal :: add);
+        BigDecimal credits = entries.stream().map(LedgerEntry :: getCredit).reduce(BigDecimal.ZERO, BigDecimal :: add);
+        assertThat(entries.size()).isEqualTo(3);
+        assertThat(debits).isEqualByComparingTo(credits);
+    }
+
+    @Test
+    @DisplayName("A batch of payments should move balances and write the ledger like single payments")
+    void batchPayments_shouldMatch_ledger() {
+        userService.deposit(issuer, "100");
+
+        List<Transaction> transactions = transferExecutor.transferBatch(issuer.getId(), List.of(
+                new PaymentViewModel(payee.getEmail(), Money.valueOf("20"), "starter"),
+                new PaymentViewModel(payee.getEmail(), Money.valueOf("40"), "main course")));
+
+        assertThat(transactions.size()).isEqualTo(2);
+        assertThat(balanceOf(issuer)).isEqualByComparingTo(new BigDecimal("39.70"));
+        assertThat(balanceOf(payee)).isEqualByComparingTo(new BigDecimal("60.00"));
+        assertThat(ledgerService.getUserBalance(issuer.getId())).isEqualByComparingTo(balanceOf(issuer));
+        assertThat(ledgerService.getUserBalance(payee.getId())).isEqualByComparingTo(balanceOf(payee));
+    }
+
+    private BigDecimal balanceOf(User user) {
+        return userRepository.findById(user.getId()).orElseThrow().getBalance();
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName("Firstname");
+        user.setLastName("Lastname");
+        user.setPassword("password");
+        return user;
+    }
+}
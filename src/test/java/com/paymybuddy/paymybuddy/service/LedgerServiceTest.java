@@ -0,0 +1,142 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.BalanceSnapshot;
+import com.paymybuddy.paymybuddy.model.LedgerEntry;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.BalanceSnapshotRepository;
+import com.paymybuddy.paymybuddy.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@Import(LedgerService.class)
+class LedgerServiceTest {
+    /**
+     * Class under test.
+     */
+    @Autowired
+    LedgerService ledgerService;
+
+    @MockBean
+    LedgerEntryRepository ledgerEntryRepository;
+
+    @MockBean
+    BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @MockBean
+    Clock clock;
+
+    private static final LocalDateTime LOCAL_DATE_NOW = LocalDateTime.of(2022, 7, 18, 10, 0, 0);
+
+    private User issuer;
+    private User payee;
+
+    @BeforeEach
+    void setup() {
+        Clock fixedClock = Clock.fixed(LOCAL_DATE_NOW.atZone(ZoneId.systemDefault()).toInstant(),
+                                       ZoneId.systemDefault());
+        when(clock.instant()).thenReturn(fixedClock.instant());
+        when(clock.getZone()).thenReturn(fixedClock.getZone());
+
+        issuer = new User();
+        issuer.setId(1);
+        payee = new User();
+        payee.setId(2);
+    }
+
+    @Test
+    @DisplayName("A deposit should debit the user's bank and credit their balance")
+    void recordDeposit_shouldWrite_balancedEntries() {
+        ledgerService.recordDeposit(issuer, new BigDecimal("50.00"));
+
+        List<LedgerEntry> entries = savedEntries();
+        assertThat(entries.size()).isEqualTo(2);
+        assertEntry(entries.get(0), LedgerEntry.Account.BANK, 1, "50.00", "0");
+        assertEntry(entries.get(1), LedgerEntry.Account.USER, 1, "0", "50.00");
+        assertThat(entries.get(1).getDate()).isEqualTo(LOCAL_DATE_NOW);
+    }
+
+    @Test
+    @DisplayName("A withdrawal should debit the user's balance and credit their bank")
+    void recordWithdrawal_shouldWrite_balancedEntries() {
+        ledgerService.recordWithdrawal(issuer, new BigDecimal("20.00"));
+
+        List<LedgerEntry> entries = savedEntries();
+        assertThat(entries.size()).isEqualTo(2);
+        assertEntry(entries.get(0), LedgerEntry.Account.USER, 1, "20.00", "0");
+        assertEntry(entries.get(1), LedgerEntry.Account.BANK, 1, "0", "20.00");
+    }
+
+    @Test
+    @DisplayName("A transfer should debit the issuer with fee, and credit the payee and the platform fees")
+    void recordTransfer_shouldWrite_balancedEntries() {
+        Transaction transaction = new Transaction(7, issuer, payee, LOCAL_DATE_NOW, new BigDecimal("100.00"),
+                                                  "transfer");
+
+        ledgerService.recordTransfer(transaction, new BigDecimal("0.50"));
+
+        List<LedgerEntry> entries = savedEntries();
+        assertThat(entries.size()).isEqualTo(3);
+        assertEntry(entries.get(0), LedgerEntry.Account.USER, 1, "100.50", "0");
+        assertEntry(entries.get(1), LedgerEntry.Account.USER, 2, "0", "100.00");
+        assertEntry(entries.get(2), LedgerEntry.Account.PLATFORM_FEES, 1, "0", "0.50");
+        entries.forEach(entry -> assertThat(entry.getTransactionId()).isEqualTo(7));
+    }
+
+    @Test
+    @DisplayName("A user without entry should have a 0 ledger balance")
+    void getUserBalance_withoutEntries_shouldReturn_zero() {
+        when(balanceSnapshotRepository.findFirstByUserIdOrderByEntriesBeforeDesc(1)).thenReturn(Optional.empty());
+        when(ledgerEntryRepository.sumByAccountAndUserIdSince(LedgerEntry.Account.USER, 1,
+                                                              BalanceSnapshot.NO_SNAPSHOT)).thenReturn(null);
+
+        assertThat(ledgerService.getUserBalance(1)).isEqualTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    @DisplayName("A user's ledger balance should add the entries after their snapshot to it")
+    void getUserBalance_shouldAdd_entriesAfterSnapshot() {
+        LocalDateTime mark = LOCAL_DATE_NOW.minusDays(1);
+        when(balanceSnapshotRepository.findFirstByUserIdOrderByEntriesBeforeDesc(1))
+                .thenReturn(Optional.of(new BalanceSnapshot(3, 1, new BigDecimal("50.00"), mark, LOCAL_DATE_NOW)));
+        when(ledgerEntryRepository.sumByAccountAndUserIdSince(LedgerEntry.Account.USER, 1, mark))
+                .thenReturn(new BigDecimal("-4.50"));
+
+        assertThat(ledgerService.getUserBalance(1)).isEqualTo(new BigDecimal("45.50"));
+        verify(ledgerEntryRepository, never())
+                .sumByAccountAndUserIdSince(LedgerEntry.Account.USER, 1, BalanceSnapshot.NO_SNAPSHOT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<LedgerEntry> savedEntries() {
+        ArgumentCaptor<List<LedgerEntry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerEntryRepository, times(1)).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private static void assertEntry(LedgerEntry entry, LedgerEntry.Account account, Integer userId, String debit,
+                                    String credit) {
+        assertThat(entry.getAccount()).isEqualTo(account);
+        assertThat(entry.getUserId()).isEqualTo(userId);
+        assertThat(entry.getDebit()).isEqualByComparingTo(new BigDecimal(debit));
+        assertThat(entry.getCredit()).isEqualByComparingTo(new BigDecimal(credit));
+    }
+}
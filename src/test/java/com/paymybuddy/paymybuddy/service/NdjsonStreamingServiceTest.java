@@ -0,0 +1,60 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@Import({NdjsonStreamingService.class, JacksonAutoConfiguration.class})
+class NdjsonStreamingServiceTest {
+    /**
+     * Class under test.
+     */
+    @Autowired
+    NdjsonStreamingService ndjsonStreamingService;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Rows should be written one JSON object per line, in a transaction, and the stream closed")
+    void write_shouldWrite_oneLinePerRow() throws Exception {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        AtomicBoolean         closed = new AtomicBoolean();
+        ByteArrayOutputStream out    = new ByteArrayOutputStream();
+
+        long written = ndjsonStreamingService.write(() -> Stream.of(
+                new UserViewModel(1, "monica@mail.com", "Monica", "Geller", new BigDecimal("10.00")),
+                new UserViewModel(2, "ross@mail.com", "Ross", "Geller", new BigDecimal("0.00"))
+        ).onClose(() -> closed.set(true)), out);
+
+        assertEquals(2, written);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":1,\"email\":\"monica@mail.com\",\"firstname\":\"Monica\",\"lastname\":\"Geller\","
+                + "\"balance\":10.00}\n"
+                + "{\"id\":2,\"email\":\"ross@mail.com\",\"firstname\":\"Ross\",\"lastname\":\"Geller\","
+                + "\"balance\":0.00}\n");
+        assertThat(closed.get()).isTrue();
+        verify(transactionManager).commit(any());
+    }
+}
@@ -0,0 +1,124 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@Import(PageModelService.class)
+class PageModelServiceTest {
+    /**
+     * Class under test.
+     */
+    @Autowired
+    PageModelService pageModelService;
+
+    @MockBean
+    UserService userService;
+    @MockBean
+    ConnectionService connectionService;
+    @MockBean
+    TransactionService transactionService;
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    private User                 monica;
+    private UserViewModel        ross;
+    private TransactionViewModel transaction;
+
+    @BeforeEach
+    void setup() {
+        monica = new User(1, "monica@mail.com", "password", "Monica", "Geller", new BigDecimal("100.00"),
+                          new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        ross = new UserViewModel(2, "ross@mail.com", "Ross", "Geller", new BigDecimal("50.00"));
+        transaction = new TransactionViewModel(8, UserService.userToViewModel(monica), ross,
+                                               LocalDateTime.of(2022, 7, 18, 10, 0), new BigDecimal("12.50"),
+                                               "Dinner");
+        when(userService.getAuthenticatedUser()).thenReturn(monica);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    @DisplayName("Home page should be read in one read-only transaction, committed before rendering")
+    void getHomePage_shouldRead_inOneReadOnlyTransaction() {
+        ConnectionViewModel connection = new ConnectionViewModel(3, UserService.userToViewModel(monica), ross,
+                                                                 LocalDateTime.of(2022, 7, 1, 9, 0));
+        when(connectionService.getMostRecentUserConnection(monica)).thenReturn(Optional.of(connection));
+        when(transactionService.getMostRecentUserTransaction(1)).thenReturn(Optional.empty());
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+
+        HomePageViewModel homePage = pageModelService.getHomePage();
+
+        assertThat(homePage.getUser()).isEqualTo(UserService.userToViewModel(monica));
+        assertThat(homePage.getMostRecentConnection()).isEqualTo(connection);
+        assertThat(homePage.getMostRecentTransaction()).isNull();
+        verify(transactionManager, times(1)).getTransaction(definition.capture());
+        assertThat(definition.getValue().isReadOnly()).isTrue();
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Profile page should hold the requested page of buddies")
+    void getProfilePage_shouldHold_pageOfBuddies() {
+        PageImpl<UserViewModel> buddies = new PageImpl<>(List.of(ross), PageRequest.of(1, 5), 6);
+        doReturn(buddies).when(connectionService).getPaginatedUserConnections(PageRequest.of(1, 5), monica);
+
+        ProfilePageViewModel profilePage = pageModelService.getProfilePage(2, 5);
+
+        assertThat(profilePage.getUser()).isEqualTo(UserService.userToViewModel(monica));
+        assertThat(profilePage.getConnections()).isEqualTo(buddies);
+    }
+
+    @Test
+    @DisplayName("Transfer page without cursor should hold a numbered page of transactions")
+    void getTransferPage_withoutCursor_shouldHold_numberedPage() {
+        PageImpl<TransactionViewModel> transactions = new PageImpl<>(List.of(transaction), PageRequest.of(0, 5), 1);
+        when(transactionService.getPaginatedUserTransactions(PageRequest.of(0, 5), 1)).thenReturn(transactions);
+        when(connectionService.getUserConnections(monica)).thenReturn(List.of(ross));
+
+        TransferPageViewModel transferPage = pageModelService.getTransferPage(1, 5, null);
+
+        assertThat(transferPage.getTransactions()).isEqualTo(List.of(transaction));
+        assertThat(transferPage.getPagedList()).isEqualTo(transactions);
+        assertThat(transferPage.getNextCursor()).isNull();
+        assertThat(transferPage.getConnections()).isEqualTo(List.of(ross));
+        verify(transactionService, never()).getUserTransactionsBefore(any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Transfer page with a cursor should hold the following transactions and the next cursor")
+    void getTransferPage_withCursor_shouldHold_followingTransactions() {
+        when(transactionService.getUserTransactionsBefore(1, "cursor", 5))
+                .thenReturn(new TransactionPageViewModel(List.of(transaction), "next"));
+
+        TransferPageViewModel transferPage = pageModelService.getTransferPage(1, 5, "cursor");
+
+        assertThat(transferPage.getTransactions()).isEqualTo(List.of(transaction));
+        assertThat(transferPage.getPagedList()).isNull();
+        assertThat(transferPage.getNextCursor()).isEqualTo("next");
+        verify(transactionService, never()).getPaginatedUserTransactions(any(), any());
+    }
+}
@@ -0,0 +1,178 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * Compares payments run by the calling thread with payments run on the issuers' transfer lanes, one transaction per
+ * payment or committed in groups, for 1, 8 and 64 concurrent clients paying around a ring of accounts, so that
+ * neighbouring payments cross. Throughputs and failed payments are logged, then the resulting balances are checked.
+ */
+@SpringBootTest
+@Slf4j
+class PartitionedTransferBenchmarkIT {
+    private static final int   ACCOUNTS = 8;
+    private static final int   PAYMENTS = 256;
+    private static final int[] CLIENTS  = {1, 8, 64};
+
+    @Autowired
+    TransferExecutor transferExecutor;
+
+    @Autowired
+    PartitionedTransferExecutor partitionedTransferExecutor;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ConnectionRepository connectionRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    private List<User>       accounts;
+    private List<Connection> connections;
+
+    @BeforeEach
+    void init() {
+        accounts = new ArrayList<>();
+        connections = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            User account = userService.createUser(newUser("ring" + i + ".benchmark@mail.com"));
+            userService.deposit(account, "10000");
+            accounts.add(account);
+        }
+        for (int i = 0; i < ACCOUNTS; i++) {
+            connections.add(connectionRepository.save(new Connection(null, accounts.get(i), next(i),
+                                                                     LocalDateTime.now())));
+        }
+    }
+
+    @AfterEach
+    void reset() {
+        accounts.forEach(account -> transactionRepository.deleteAll(transactionRepository.findByPayee(account)));
+        connectionRepository.deleteAll(connections);
+        accounts.forEach(account -> userRepository.deleteById(account.getId()));
+    }
+
+    @Test
+    @DisplayName("Payments on the calling thread and on transfer lanes should both move balances exactly")
+    void compareCallingThreadAndLanes() throws Exception {
+        AtomicIntegerArray          sent       = new AtomicIntegerArray(ACCOUNTS);
+        PartitionedTransferExecutor ungrouped  = new PartitionedTransferExecutor(transferExecutor,
+                                                                                 new SimpleMeterRegistry(), 4, 1, 0);
+        DistributionSummary         groupSizes = meterRegistry.get("transfer.group.size").summary();
+        try {
+            for (int clients : CLIENTS) {
+                AtomicInteger directFailures = new AtomicInteger();
+                long direct = run(clients, sent, directFailures, (issuer, payee) ->
+                        transferExecutor.transfer(issuer, payee, "direct", Money.valueOf("1")));
+                AtomicInteger laneFailures = new AtomicInteger();
+                long lanes = run(clients, sent, laneFailures, (issuer, payee) ->
+                        ungrouped.transfer(issuer, payee, "lane", Money.valueOf("1")).join());
+                long groupsBefore = groupSizes.count();
+                long grouped = run(clients, sent, laneFailures, (issuer, payee) ->
+                        partitionedTransferExecutor.transfer(issuer, payee, "grouped", Money.valueOf("1")).join());
+                log.info(clients + " clients: " + PAYMENTS * 1000L / Math.max(direct, 1)
+                         + " payments/s on calling threads (" + directFailures + " failed), "
+                         + PAYMENTS * 1000L / Math.max(lanes, 1) + " payments/s on transfer lanes, "
+                         + PAYMENTS * 1000L / Math.max(grouped, 1) + " payments/s committed in "
+                         + (groupSizes.count() - groupsBefore) + " groups.");
+                // an issuer's payments never compete with each other on its lane
+                assertThat(laneFailures.get()).isZero();
+            }
+        } finally {
+            ungrouped.shutdown();
+        }
+
+        // each account paid 1.01 with fee per payment sent, and received 1 per payment of the previous account
+        for (int i = 0; i < ACCOUNTS; i++) {
+            int received = sent.get(Math.floorMod(i - 1, ACCOUNTS));
+            assertThat(balanceOf(accounts.get(i).getId())).isEqualTo(new BigDecimal("10000.00")
+                                                                             .subtract(new BigDecimal("1.01").multiply(new BigDecimal(sent.get(i))))
+                                                                             .add(new BigDecimal(received)));
+        }
+    }
+
+    /**
+     * Shares the payments between the clients, each paying from its account to the next one, and returns the
+     * elapsed milliseconds. Payments made are counted by issuing account, payments given up on a conflict apart.
+     */
+    private long run(int clients, AtomicIntegerArray sent, AtomicInteger failures,
+                     BiConsumer<Integer, Integer> payment) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch  start    = new CountDownLatch(1);
+        List<Future<?>> futures  = new ArrayList<>();
+        for (int client = 0; client < clients; client++) {
+            int account  = client % ACCOUNTS;
+            int payments = PAYMENTS / clients;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < payments; i++) {
+                    try {
+                        payment.accept(accounts.get(account).getId(), next(account).getId());
+                        sent.incrementAndGet(account);
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
+    private User next(int account) {
+        return accounts.get((account + 1) % ACCOUNTS);
+    }
+
+    private BigDecimal balanceOf(Integer id) {
+        return userRepository.findById(id).orElseThrow().getBalance();
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName("Firstname");
+        user.setLastName("Lastname");
+        user.setPassword("password");
+        return user;
+    }
+}
@@ -0,0 +1,291 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+class PartitionedTransferExecutorTest {
+    private static final int LANES          = 2;
+    private static final int MAX_GROUP_SIZE = 4;
+
+    @MockBean
+    TransferExecutor transferExecutor;
+
+    /**
+     * Class under test.
+     */
+    private PartitionedTransferExecutor lanes;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * Descriptions of the payments of each group written, in order.
+     */
+    private final List<List<String>> groups = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        groups.clear();
+        meterRegistry = new SimpleMeterRegistry();
+        lanes = new PartitionedTransferExecutor(transferExecutor, meterRegistry, LANES, MAX_GROUP_SIZE, 0);
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        lanes.shutdown();
+    }
+
+    /**
+     * Writes each group by saving all its payments, once the latch is released.
+     */
+    private void writeGroupsAfter(CountDownLatch released) {
+        doAnswer(invocation -> {
+            released.await();
+            List<GroupedTransfer> group = invocation.getArgument(0);
+            groups.add(group.stream().map(GroupedTransfer :: getDescription).toList());
+            group.forEach(transfer -> transfer.setTransaction(new Transaction()));
+            return null;
+        }).when(transferExecutor).transferGroup(anyList());
+    }
+
+    @Test
+    @DisplayName("Payments from one issuer should be written in submission order, on the issuer's lane")
+    void transfer_fromOneIssuer_shouldRun_inOrder() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            List<GroupedTransfer> group = invocation.getArgument(0);
+            groups.add(group.stream().map(GroupedTransfer :: getDescription).toList());
+            group.forEach(transfer -> transfer.setTransaction(new Transaction()));
+            return null;
+        }).when(transferExecutor).transferGroup(anyList());
+
+        List<CompletableFuture<Transaction>> payments = new ArrayList<>();
+        List<String>                         expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            payments.add(lanes.transfer(3, 4, "payment " + i, Money.valueOf("1")));
+            expected.add("payment " + i);
+        }
+        payments.forEach(CompletableFuture :: join);
+
+        assertEquals(expected, groups.stream().flatMap(List :: stream).toList());
+        assertThat(threads).containsExactly("transfer-lane-" + lanes.laneOf(3));
+    }
+
+    @Test
+    @DisplayName("Payments queued while a group is written should be written together, a batch ending the group")
+    void transfer_queued_shouldBe_grouped() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        writeGroupsAfter(released);
+        when(transferExecutor.transferBatch(eq(1), anyList())).thenReturn(List.of(new Transaction()));
+
+        List<CompletableFuture<?>> payments = new ArrayList<>();
+        payments.add(lanes.transfer(1, 2, "first", Money.valueOf("1")));
+        // wait for the first group to be taken by the lane
+        while (meterRegistry.get("transfer.group.size").summary().count() == 0) {
+            Thread.onSpinWait();
+        }
+        for (int i = 0; i < 6; i++) {
+            payments.add(lanes.transfer(1, 2, "queued " + i, Money.valueOf("1")));
+        }
+        payments.add(lanes.transferBatch(1, List.of()));
+        payments.add(lanes.transfer(1, 2, "last", Money.valueOf("1")));
+        released.countDown();
+        CompletableFuture.allOf(payments.toArray(CompletableFuture[] :: new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(List.of("first"),
+                             List.of("queued 0", "queued 1", "queued 2", "queued 3"),
+                             List.of("queued 4", "queued 5"),
+                             List.of("last")), groups);
+        assertEquals(4, meterRegistry.get("transfer.group.size").summary().count());
+        assertEquals(8, meterRegistry.get("transfer.group.wait").timer().count());
+    }
+
+    @Test
+    @DisplayName("A group should wait for more payments until the end of its window")
+    void transfer_withinWindow_shouldBe_grouped() throws Exception {
+        lanes.shutdown();
+        lanes = new PartitionedTransferExecutor(transferExecutor, meterRegistry, LANES, MAX_GROUP_SIZE,
+                                                TimeUnit.SECONDS.toMicros(10));
+        writeGroupsAfter(new CountDownLatch(0));
+
+        List<CompletableFuture<Transaction>> payments = new ArrayList<>();
+        for (int i = 0; i < MAX_GROUP_SIZE; i++) {
+            payments.add(lanes.transfer(1, 2, "payment " + i, Money.valueOf("1")));
+            Thread.sleep(10);
+        }
+        CompletableFuture.allOf(payments.toArray(CompletableFuture[] :: new)).get(5, TimeUnit.SECONDS);
+
+        // the group was full before the end of the window
+        assertEquals(List.of(List.of("payment 0", "payment 1", "payment 2", "payment 3")), groups);
+    }
+
+    @Test
+    @DisplayName("A refused payment should fail its future with the reason, the others of its group going on")
+    void transfer_refused_shouldFail_future() {
+        InsufficientBalanceException refused = new InsufficientBalanceException("Insufficient balance.");
+        Transaction                  saved   = new Transaction();
+        doAnswer(invocation -> {
+            List<GroupedTransfer> group = invocation.getArgument(0);
+            group.forEach(transfer -> {
+                if (transfer.getDescription().equals("refused")) {
+                    transfer.setFailure(refused);
+                } else {
+                    transfer.setTransaction(saved);
+                }
+            });
+            return null;
+        }).when(transferExecutor).transferGroup(anyList());
+
+        CompletableFuture<Transaction> payment = lanes.transfer(1, 2, "refused", Money.valueOf("1"));
+        CompletableFuture<Transaction> other   = lanes.transfer(1, 2, "other", Money.valueOf("1"));
+
+        CompletionException failure = assertThrows(CompletionException.class, payment :: join);
+        assertSame(refused, failure.getCause());
+        assertSame(saved, other.join());
+    }
+
+    @Test
+    @DisplayName("A group failing as a whole should fail the future of each of its payments")
+    void transfer_groupFailing_shouldFail_futures() {
+        DataAccessResourceFailureException down = new DataAccessResourceFailureException("Database down.");
+        doThrow(down).when(transferExecutor).transferGroup(anyList());
+
+        CompletableFuture<Transaction> payment = lanes.transfer(1, 2, "failed", Money.valueOf("1"));
+
+        CompletionException failure = assertThrows(CompletionException.class, payment :: join);
+        assertSame(down, failure.getCause());
+    }
+
+    @Test
+    @DisplayName("A group failing with an error should fail its futures and leave the lane running")
+    void transfer_groupFailingWithError_shouldKeep_laneRunning() throws Exception {
+        AssertionError error = new AssertionError("Broken invariant.");
+        Transaction    saved = new Transaction();
+        doThrow(error).doAnswer(invocation -> {
+            List<GroupedTransfer> group = invocation.getArgument(0);
+            group.forEach(transfer -> transfer.setTransaction(saved));
+            return null;
+        }).when(transferExecutor).transferGroup(anyList());
+
+        CompletableFuture<Transaction> failed = lanes.transfer(1, 2, "failed", Money.valueOf("1"));
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertSame(error, failure.getCause());
+
+        assertSame(saved, lanes.transfer(1, 2, "next", Money.valueOf("1")).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("A batch failing with an error should fail its future and leave the lane running")
+    void transferBatch_failingWithError_shouldKeep_laneRunning() throws Exception {
+        StackOverflowError error = new StackOverflowError();
+        when(transferExecutor.transferBatch(eq(1), anyList())).thenThrow(error).thenReturn(List.of());
+
+        CompletableFuture<List<Transaction>> failed = lanes.transferBatch(1, List.of());
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertSame(error, failure.getCause());
+
+        assertThat(lanes.transferBatch(1, List.of()).get(5, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A slow group should not hold up issuers of other lanes")
+    void transfer_onOtherLane_shouldNotWait() throws Exception {
+        CountDownLatch slowGroupReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            List<GroupedTransfer> group = invocation.getArgument(0);
+            if (group.get(0).getIssuerId() == 1) {
+                slowGroupReleased.await();
+            }
+            group.forEach(transfer -> transfer.setTransaction(new Transaction()));
+            return null;
+        }).when(transferExecutor).transferGroup(anyList());
+        assertNotEquals(lanes.laneOf(1), lanes.laneOf(2));
+
+        CompletableFuture<Transaction> slow = lanes.transfer(1, 2, "slow", Money.valueOf("1"));
+
+        assertNotNull(lanes.transfer(2, 1, "other", Money.valueOf("1")).get(5, TimeUnit.SECONDS));
+        assertFalse(slow.isDone());
+        slowGroupReleased.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Stopped lanes should finish submitted payments and refuse new ones")
+    void shutdown_shouldFinish_submittedPayments() throws Exception {
+        when(transferExecutor.transferBatch(eq(1), anyList())).thenReturn(List.of(new Transaction()));
+        CompletableFuture<List<Transaction>> submitted = lanes.transferBatch(1, List.of());
+
+        lanes.shutdown();
+
+        assertTrue(submitted.isDone());
+        assertThat(submitted.get()).hasSize(1);
+        assertThrows(RejectedExecutionException.class, () -> lanes.transfer(1, 2, "late", Money.valueOf("1")));
+    }
+
+    @Test
+    @DisplayName("Payments submitted while lanes stop should either be written or refused, never left waiting")
+    void submit_duringShutdown_shouldNotLose_payments() throws Exception {
+        when(transferExecutor.transferBatch(eq(1), anyList())).thenReturn(List.of());
+        List<CompletableFuture<List<Transaction>>> submitted = new CopyOnWriteArrayList<>();
+        CountDownLatch                             started   = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            started.countDown();
+            try {
+                while (true) {
+                    submitted.add(lanes.transferBatch(1, List.of()));
+                }
+            } catch (RejectedExecutionException stopped) {
+                // lanes stopped
+            }
+        });
+        submitter.start();
+        started.await();
+
+        lanes.shutdown();
+        submitter.join(5000);
+
+        assertFalse(submitter.isAlive());
+        assertThat(submitted).allMatch(CompletableFuture :: isDone);
+    }
+
+    @Test
+    @DisplayName("Lanes should be chosen by issuer id, negative ids included")
+    void laneOf_shouldSpread_issuers() {
+        assertEquals(0, lanes.laneOf(4));
+        assertEquals(1, lanes.laneOf(5));
+        assertEquals(1, lanes.laneOf(-1));
+    }
+
+    @Test
+    @DisplayName("At least one lane and one payment per group should be required")
+    void constructor_withoutLane_shouldThrow_exception() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> new PartitionedTransferExecutor(transferExecutor, new SimpleMeterRegistry(), 0, 1, 0));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new PartitionedTransferExecutor(transferExecutor, new SimpleMeterRegistry(), 1, 0, 0));
+    }
+}
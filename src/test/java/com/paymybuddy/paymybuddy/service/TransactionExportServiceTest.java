@@ -0,0 +1,85 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(SpringExtension.class)
+@Import({TransactionExportService.class, NdjsonStreamingService.class, JacksonAutoConfiguration.class})
+class TransactionExportServiceTest {
+    /**
+     * Class under test.
+     */
+    @Autowired
+    TransactionExportService transactionExportService;
+
+    @MockBean
+    TransactionService transactionService;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    @BeforeEach
+    void setup() {
+        UserViewModel monica = new UserViewModel(1, "monica@mail.com", "Monica", "Geller", new BigDecimal("100.00"));
+        UserViewModel ross   = new UserViewModel(2, "ross@mail.com", "Ross", "Geller", new BigDecimal("100.00"));
+        closed.set(false);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(transactionService.streamUserTransactions(1)).thenAnswer(invocation -> Stream.of(
+                new TransactionViewModel(8, monica, ross, LocalDateTime.of(2022, 7, 18, 10, 0), new BigDecimal("12.50"),
+                                         "Dinner, \"the\" one"),
+                new TransactionViewModel(5, ross, monica, LocalDateTime.of(2022, 7, 1, 9, 30), new BigDecimal("3.00"),
+                                         "Coffee")).onClose(() -> closed.set(true)));
+    }
+
+    @Test
+    @DisplayName("CSV export should write a header, then one quoted line per transaction")
+    void export_asCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(2, transactionExportService.export(1, TransactionExportService.Format.CSV, out));
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                TransactionExportService.CSV_HEADER + "\n"
+                + "8,2022-07-18T10:00,monica@mail.com,ross@mail.com,12.50,\"Dinner, \"\"the\"\" one\"\n"
+                + "5,2022-07-01T09:30,ross@mail.com,monica@mail.com,3.00,Coffee\n");
+        assertThat(closed.get()).isTrue();
+    }
+
+    @Test
+    @DisplayName("NDJSON export should write one JSON object per line")
+    void export_asNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(2, transactionExportService.export(1, TransactionExportService.Format.NDJSON, out));
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":8,\"date\":\"2022-07-18T10:00\",\"issuer\":\"monica@mail.com\",\"payee\":\"ross@mail.com\","
+                + "\"amount\":12.50,\"description\":\"Dinner, \\\"the\\\" one\"}\n"
+                + "{\"id\":5,\"date\":\"2022-07-01T09:30\",\"issuer\":\"ross@mail.com\",\"payee\":\"monica@mail.com\","
+                + "\"amount\":3.00,\"description\":\"Coffee\"}\n");
+        assertThat(closed.get()).isTrue();
+    }
+}
@@ -0,0 +1,161 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.constants.Pagination;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.PaymentViewModel;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that reading and paying cost the same number of statements whatever the number of transactions.
+ */
+@DataJpaTest
+@Import(TransactionService.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TransactionServiceIT {
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    EntityManager entityManager;
+
+    @MockBean
+    ConnectionService connectionService;
+    @MockBean
+    UserService       userService;
+    @MockBean
+    LedgerService     ledgerService;
+    @MockBean
+    Clock             clock;
+
+    // fills the first page of both histories, so that the page count query always runs
+    private static final int PAGE_SIZE = 2;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @DisplayName("Reading transactions should not load issuers and payees one by one")
+    void readingTransactions_shouldNotDependOn_historySize() {
+        long[] small = countStatements(createHistory("small", 2));
+        long[] large = countStatements(createHistory("large", 20));
+
+        assertEquals(small[0], large[0], "streamTransactions");
+        assertEquals(small[1], large[1], "getUserTransactions");
+        assertEquals(small[2], large[2], "getPaginatedUserTransactions");
+        assertEquals(small[3], large[3], "getUserTransactionsBefore");
+    }
+
+    @Test
+    @DisplayName("Paying should not load the transaction histories of the issuer and the payee")
+    void payments_shouldNotLoad_histories() {
+        Integer issuerId = createHistory("issuer", 20).getId();
+        Integer payeeId  = createHistory("payee", 20).getId();
+        entityManager.flush();
+        entityManager.clear();
+        User issuer = entityManager.find(User.class, issuerId);
+        User payee  = entityManager.find(User.class, payeeId);
+        when(connectionService.existsConnectionBetween(eq(issuer), any(User.class))).thenReturn(true);
+        when(userService.getUsersByEmails(any())).thenReturn(Map.of(payee.getEmail(), payee));
+        when(clock.instant()).thenReturn(Instant.now());
+        when(clock.getZone()).thenReturn(ZoneId.systemDefault());
+        statistics.clear();
+
+        transactionService.createTransaction(issuer, payee, "single", Money.valueOf("10"));
+        transactionService.createTransactions(issuer, List.of(
+                new PaymentViewModel(payee.getEmail(), Money.valueOf("5"), "batch")));
+
+        List<List<Transaction>> histories = List.of(issuer.getInitiatedTransactions(), issuer.getReceivedTransactions(),
+                                                    payee.getInitiatedTransactions(), payee.getReceivedTransactions());
+        for (List<Transaction> history : histories) {
+            // not even queued until the next flush, to be added if the history is loaded
+            assertFalse(((PersistentCollection) history).hasQueuedOperations());
+        }
+        entityManager.flush();
+        assertEquals(0, statistics.getCollectionLoadCount());
+        for (List<Transaction> history : histories) {
+            assertFalse(Hibernate.isInitialized(history));
+        }
+    }
+
+    /**
+     * Creates a user with transactions to as many other users.
+     */
+    private User createHistory(String name, int size) {
+        User user = userRepository.save(newUser(name + "@mail.com"));
+        for (int i = 0; i < size; i++) {
+            User buddy = userRepository.save(newUser(name + i + "@mail.com"));
+            transactionRepository.save(new Transaction(null, i % 2 == 0 ? user : buddy, i % 2 == 0 ? buddy : user,
+                                                       LocalDateTime.of(2022, 7, 18, 10, 0).minusHours(i),
+                                                       BigDecimal.TEN, "transaction " + i));
+        }
+        when(userService.getUserById(user.getId())).thenReturn(Optional.of(user));
+        return user;
+    }
+
+    private long[] countStatements(User user) {
+        entityManager.flush();
+        return new long[]{
+                countStatements(() -> transactionService.streamTransactions(0, Pagination.MAX_STREAMED_SIZE).toList()),
+                countStatements(() -> transactionService.getUserTransactions(user.getId())),
+                countStatements(() -> transactionService.getPaginatedUserTransactions(PageRequest.of(0, PAGE_SIZE),
+                                                                                      user.getId())),
+                countStatements(() -> transactionService.getUserTransactionsBefore(user.getId(), null, PAGE_SIZE))
+        };
+    }
+
+    private long countStatements(Supplier<?> read) {
+        entityManager.clear();
+        statistics.clear();
+        read.get();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private static User newUser(String email) {
+        return new User(null, email, "password", "Firstname", "Lastname", new BigDecimal("100.00"),
+                        new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+}
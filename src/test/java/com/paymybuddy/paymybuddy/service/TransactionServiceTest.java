@@ -1,33 +1,45 @@
 package com.paymybuddy.paymybuddy.service;
 
-import com.paymybuddy.paymybuddy.constants.Fee;
+import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
 import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
+import com.paymybuddy.paymybuddy.exceptions.InvalidCursorException;
 import com.paymybuddy.paymybuddy.exceptions.InvalidAmountException;
 import com.paymybuddy.paymybuddy.exceptions.InvalidPayeeException;
+import com.paymybuddy.paymybuddy.exceptions.InvalidPaymentBatchException;
+import com.paymybuddy.paymybuddy.model.Money;
 import com.paymybuddy.paymybuddy.model.Transaction;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.PaymentViewModel;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionCursor;
+import com.paymybuddy.paymybuddy.model.viewmodel.TransactionPageViewModel;
 import com.paymybuddy.paymybuddy.model.viewmodel.TransactionViewModel;
 import com.paymybuddy.paymybuddy.repository.TransactionRepository;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
 @Import(TransactionService.class)
@@ -46,6 +58,8 @@ class TransactionServiceTest {
     ConnectionService connectionService;
     @MockBean
     UserService       userService;
+    @MockBean
+    LedgerService     ledgerService;
 
     @MockBean
     Clock clock;
@@ -55,7 +69,7 @@ class TransactionServiceTest {
 
     private User        issuer;
     private User        payee;
-    private double      amount;
+    private Money       amount;
     private Transaction transaction;
 
     @BeforeAll
@@ -92,7 +106,7 @@ class TransactionServiceTest {
     @Test
     @DisplayName("Transaction with negative amount should throw exception")
     void createTransaction_whenAmount_isNegative() {
-        amount = -50;
+        amount = Money.valueOf("-50");
         assertThrows(InvalidAmountException.class,
                      () -> transactionService.createTransaction(issuer,
                                                                 payee,
@@ -103,7 +117,7 @@ class TransactionServiceTest {
     @Test
     @DisplayName("Transaction with amount equal to zero should throw exception")
     void createTransaction_whenAmount_isZero() {
-        amount = 0;
+        amount = Money.valueOf("0");
         assertThrows(InvalidAmountException.class,
                      () -> transactionService.createTransaction(issuer,
                                                                 payee,
@@ -114,7 +128,7 @@ class TransactionServiceTest {
     @Test
     @DisplayName("Exception should be thrown when issuer does not have sufficient balance")
     void createTransaction_whenIssuer_isPoor() {
-        amount = 1000;
+        amount = Money.valueOf("1000");
         assertThrows(InsufficientBalanceException.class,
                      () -> transactionService.createTransaction(issuer,
                                                                 payee,
@@ -125,9 +139,8 @@ class TransactionServiceTest {
     @Test
     @DisplayName("The payee should be one of issuer's buddies")
     void createTransaction_whenPayee_notInIssuersBuddies() {
-        amount = 50;
-        when(connectionService.getUserConnections(any(User.class)))
-                .thenReturn(Collections.emptyList());
+        amount = Money.valueOf("50");
+        when(connectionService.existsConnectionBetween(any(User.class), any(User.class))).thenReturn(false);
         assertThrows(InvalidPayeeException.class,
                      () -> transactionService.createTransaction(issuer,
                                                                 payee,
@@ -138,66 +151,305 @@ class TransactionServiceTest {
     @Test
     @DisplayName("Issuer's balance is withdrawn with correct fee after transaction")
     void createTransaction_shouldUpdate_issuersBalance() {
-        amount = 100;
-        BigDecimal issuersBalanceBefore = issuer.getBalance();
-        double     fee                  = amount * Fee.TRANSACTION_FEE;
-        BigDecimal totalAmount = new BigDecimal(Double.toString(amount + fee)).setScale(Fee.SCALE,
-                                                                                        RoundingMode.HALF_UP);
-        when(connectionService.getUserConnections(issuer))
-                .thenReturn(List.of(UserService.userToViewModel(payee)));
+        amount = Money.valueOf("100");
+        BigDecimal totalAmount = new BigDecimal("100.50");
+        when(connectionService.existsConnectionBetween(issuer, payee)).thenReturn(true);
 
         transactionService.createTransaction(issuer,
                                              payee,
                                              "issuer's balance check",
                                              amount);
 
-        assertThat(issuer.getBalance()).isEqualTo(issuersBalanceBefore.subtract(totalAmount));
+        verify(userService, times(1)).debitBalance(issuer, totalAmount);
     }
 
     @Test
     @DisplayName("Payee's balance is updated after transaction")
     void createTransaction_shouldUpdate_payeesBalance() {
-        amount = 100;
-        BigDecimal payeesBalanceBefore = payee.getBalance();
-        when(connectionService.getUserConnections(issuer))
-                .thenReturn(List.of(UserService.userToViewModel(payee)));
+        amount = Money.valueOf("100");
+        when(connectionService.existsConnectionBetween(issuer, payee)).thenReturn(true);
 
         transactionService.createTransaction(issuer,
                                              payee,
                                              "payee's balance check",
                                              amount);
 
-        assertThat(payee.getBalance()).isEqualTo(payeesBalanceBefore.add(new BigDecimal(amount).setScale(Fee.SCALE,
-                                                                                                         RoundingMode.HALF_UP)));
+        verify(userService, times(1)).creditBalance(payee, new BigDecimal("100.00"));
+    }
+
+    @Test
+    @DisplayName("Transaction is recorded in the ledger with its fee")
+    void createTransaction_shouldRecord_transferInLedger() {
+        amount = Money.valueOf("100");
+        when(connectionService.existsConnectionBetween(issuer, payee)).thenReturn(true);
+        when(transactionRepository.save(any(Transaction.class))).then(invocation -> invocation.getArgument(0));
+
+        Transaction saved = transactionService.createTransaction(issuer, payee, "ledger check", amount);
+
+        verify(ledgerService, times(1)).recordTransfer(saved, new BigDecimal("0.50"));
+    }
+
+    @Test
+    @DisplayName("A batch should debit the issuer once and credit each payee once with all their payments")
+    void createTransactions_shouldDebit_issuerOnce() {
+        User other = new User();
+        other.setId(3);
+        other.setEmail("gellerross@friends.com");
+        when(userService.getUsersByEmails(anyCollection()))
+                .thenReturn(Map.of(payee.getEmail(), payee, other.getEmail(), other));
+        when(connectionService.existsConnectionBetween(eq(issuer), any(User.class))).thenReturn(true);
+
+        List<Transaction> transactions = transactionService.createTransactions(issuer, List.of(
+                new PaymentViewModel(payee.getEmail(), Money.valueOf("10"), "starter"),
+                new PaymentViewModel(other.getEmail(), Money.valueOf("20"), "main course"),
+                new PaymentViewModel(payee.getEmail(), Money.valueOf("30"), "dessert")));
+
+        assertThat(transactions.size()).isEqualTo(3);
+        assertThat(transactions.get(1).getPayee()).isEqualTo(other);
+        // 60 paid with a fee of 0.05 + 0.10 + 0.15
+        verify(userService, times(1)).debitBalance(issuer, new BigDecimal("60.30"));
+        verify(userService, times(1)).creditBalance(payee, new BigDecimal("40.00"));
+        verify(userService, times(1)).creditBalance(other, new BigDecimal("20.00"));
+        verify(transactionRepository, times(1)).saveAll(transactions);
+        verify(ledgerService, times(1)).recordTransfers(anyMap());
+    }
+
+    @Test
+    @DisplayName("A batch should find payees whatever the case their email is typed with")
+    void createTransactions_withMixedCaseEmails_shouldFind_payees() {
+        when(userService.getUsersByEmails(Set.of(payee.getEmail()))).thenReturn(Map.of(payee.getEmail(), payee));
+        when(connectionService.existsConnectionBetween(issuer, payee)).thenReturn(true);
+
+        List<Transaction> transactions = transactionService.createTransactions(issuer, List.of(
+                new PaymentViewModel(payee.getEmail().toUpperCase(Locale.ROOT), Money.valueOf("10"), "starter"),
+                new PaymentViewModel(" " + payee.getEmail() + " ", Money.valueOf("20"), "main course")));
+
+        assertThat(transactions.get(0).getPayee()).isEqualTo(payee);
+        assertThat(transactions.get(1).getPayee()).isEqualTo(payee);
+        verify(userService, times(1)).creditBalance(payee, new BigDecimal("30.00"));
+    }
+
+    @Test
+    @DisplayName("A batch paying an unknown email should not pay anybody")
+    void createTransactions_withUnknownPayee_shouldThrow_exception() {
+        when(userService.getUsersByEmails(anyCollection())).thenReturn(Map.of(payee.getEmail(), payee));
+        when(connectionService.existsConnectionBetween(issuer, payee)).thenReturn(true);
+
+        assertThrows(BuddyNotFoundException.class, () -> transactionService.createTransactions(issuer, List.of(
+                new PaymentViewModel(payee.getEmail(), Money.valueOf("10"), "starter"),
+                new PaymentViewModel("unknown@friends.com", Money.valueOf("20"), "main course"))));
+        verify(userService, never()).debitBalance(any(User.class), any(BigDecimal.class));
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("An empty batch should throw an exception")
+    void createTransactions_withoutPayments_shouldThrow_exception() {
+        assertThrows(InvalidPaymentBatchException.class,
+                     () -> transactionService.createTransactions(issuer, List.of()));
+    }
+
+    @Test
+    @DisplayName("A group should leave out refused payments and move each balance once, in ascending user id order")
+    void createTransactionGroup_shouldMove_eachBalanceOnce() {
+        User other = new User();
+        other.setId(3);
+        other.setEmail("gellerross@friends.com");
+        other.setBalance(new BigDecimal("100"));
+        when(userService.getUserById(1)).thenReturn(Optional.of(issuer));
+        when(userService.getUserById(2)).thenReturn(Optional.of(payee));
+        when(userService.getUserById(3)).thenReturn(Optional.of(other));
+        when(connectionService.existsConnectionBetween(any(User.class), any(User.class))).thenReturn(true);
+        List<GroupedTransfer> group = List.of(new GroupedTransfer(3, 1, "rent", Money.valueOf("20")),
+                                              new GroupedTransfer(1, 2, "starter", Money.valueOf("10")),
+                                              new GroupedTransfer(1, 2, "too much", Money.valueOf("490")),
+                                              new GroupedTransfer(1, 2, "dessert", Money.valueOf("30")));
+
+        transactionService.createTransactionGroup(group, Map.of());
+
+        assertThat(group.get(2).getFailure()).isInstanceOf(InsufficientBalanceException.class);
+        assertNull(group.get(2).getTransaction());
+        assertThat(group.get(3).getTransaction().getAmount()).isEqualTo(new BigDecimal("30.00"));
+        InOrder balances = inOrder(userService);
+        balances.verify(userService).creditBalance(issuer, new BigDecimal("20.00"));
+        // 10 and 30 paid with a fee of 0.05 + 0.15, the refused payment being left out
+        balances.verify(userService).debitBalance(issuer, new BigDecimal("40.20"));
+        balances.verify(userService).creditBalance(payee, new BigDecimal("40.00"));
+        balances.verify(userService).debitBalance(other, new BigDecimal("20.10"));
+        verify(transactionRepository, times(1)).saveAll(List.of(group.get(0).getTransaction(),
+                                                                group.get(1).getTransaction(),
+                                                                group.get(3).getTransaction()));
+        verify(ledgerService, times(1)).recordTransfers(anyMap());
+    }
+
+    @Test
+    @DisplayName("A group of refused payments should not write anything")
+    void createTransactionGroup_allRefused_shouldNotWrite() {
+        when(userService.getUserById(1)).thenReturn(Optional.of(issuer));
+        when(userService.getUserById(2)).thenReturn(Optional.of(payee));
+        when(userService.getUserById(9)).thenReturn(Optional.empty());
+        List<GroupedTransfer> group = List.of(new GroupedTransfer(1, 9, "unknown payee", Money.valueOf("10")),
+                                              new GroupedTransfer(1, 2, "negative", Money.valueOf("-10")));
+
+        transactionService.createTransactionGroup(group, Map.of());
+
+        assertThat(group.get(0).getFailure()).isInstanceOf(BuddyNotFoundException.class);
+        assertThat(group.get(1).getFailure()).isInstanceOf(InvalidAmountException.class);
+        verify(userService, never()).debitBalance(any(User.class), any(BigDecimal.class));
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("A group should refuse only the payments missing an amount or a payee, and save the others")
+    void createTransactionGroup_withMissingAmountOrPayee_shouldRefuse_onlyThesePayments() {
+        when(userService.getUserById(1)).thenReturn(Optional.of(issuer));
+        when(userService.getUserById(2)).thenReturn(Optional.of(payee));
+        when(connectionService.existsConnectionBetween(issuer, payee)).thenReturn(true);
+        List<GroupedTransfer> group = List.of(new GroupedTransfer(1, 2, "no amount", null),
+                                              new GroupedTransfer(1, null, "no payee", Money.valueOf("10")),
+                                              new GroupedTransfer(1, 2, "paid", Money.valueOf("10")));
+
+        transactionService.createTransactionGroup(group, Map.of());
+
+        assertThat(group.get(0).getFailure()).isInstanceOf(InvalidAmountException.class);
+        assertNull(group.get(0).getTransaction());
+        assertThat(group.get(1).getFailure()).isInstanceOf(BuddyNotFoundException.class);
+        assertNull(group.get(1).getTransaction());
+        assertNull(group.get(2).getFailure());
+        verify(userService, times(1)).debitBalance(issuer, new BigDecimal("10.05"));
+        verify(transactionRepository, times(1)).saveAll(List.of(group.get(2).getTransaction()));
     }
 
     @Test
-    @DisplayName("Transaction is registered in both issuer and payee's transaction list.")
-    void createTransaction_shouldUpdate_issuerAndPayeesTransactionList() {
-        when(connectionService.getUserConnections(issuer))
-                .thenReturn(List.of(UserService.userToViewModel(payee)));
-        amount = 100;
+    @DisplayName("Transaction should not be added to issuer and payee's transaction lists, which are never loaded")
+    void createTransaction_shouldNotUpdate_issuerAndPayeesTransactionList() {
+        when(connectionService.existsConnectionBetween(issuer, payee)).thenReturn(true);
+        amount = Money.valueOf("100");
+        int initiatedBefore = issuer.getInitiatedTransactions().size();
+        int receivedBefore  = payee.getReceivedTransactions().size();
 
         transactionService.createTransaction(issuer,
                                              payee,
-                                             "transaction added to issuer's and payee's " +
+                                             "transaction not added to issuer's and payee's " +
                                              "list of transaction test",
                                              amount);
 
-        assertThat(issuer.getInitiatedTransactions()).isNotNull();
-        assertThat(payee.getReceivedTransactions()).isNotNull();
+        assertThat(issuer.getInitiatedTransactions().size()).isEqualTo(initiatedBefore);
+        assertThat(payee.getReceivedTransactions().size()).isEqualTo(receivedBefore);
     }
 
     @Test
     @DisplayName("getUserTransactions should return a connection")
     void getUserTransactions() {
-        when(transactionRepository.findByIssuerOrPayee(issuer, issuer)).thenReturn(List.of(transaction));
+        when(transactionRepository.findFirstIdsByUserId(issuer.getId(), TransactionService.STREAMED_PAGE_SIZE))
+                .thenReturn(List.of(transaction.getId()));
+        when(transactionRepository.findViewModelsByIdIn(List.of(transaction.getId())))
+                .thenReturn(List.of(TransactionService.transactionToViewModel(transaction)));
         when(userService.getUserById(issuer.getId())).thenReturn(Optional.of(issuer));
         List<TransactionViewModel> result = transactionService.getUserTransactions(issuer.getId());
 
         assertTrue(result.contains(TransactionService.transactionToViewModel(transaction)));
     }
 
+    @Test
+    @DisplayName("getPaginatedUserTransactions should only map the requested page")
+    void getPaginatedUserTransactions() {
+        PageRequest pageRequest = PageRequest.of(0, 3);
+        when(transactionRepository.findPageIdsByUserId(issuer.getId(), pageRequest))
+                .thenReturn(new PageImpl<>(List.of(transaction.getId()), pageRequest, 10));
+        when(transactionRepository.findViewModelsByIdIn(List.of(transaction.getId())))
+                .thenReturn(List.of(TransactionService.transactionToViewModel(transaction)));
+
+        Page<TransactionViewModel> result = transactionService.getPaginatedUserTransactions(pageRequest,
+                                                                                            issuer.getId());
+
+        assertEquals(10, result.getTotalElements());
+        assertEquals(List.of(TransactionService.transactionToViewModel(transaction)), result.getContent());
+    }
+
+    @Test
+    @DisplayName("getUserTransactionsBefore should return a cursor when more transactions follow")
+    void getUserTransactionsBefore_shouldReturn_nextCursor() {
+        when(transactionRepository.findFirstIdsByUserId(issuer.getId(), 2))
+                .thenReturn(List.of(transaction.getId(), 2));
+        when(transactionRepository.findViewModelsByIdIn(List.of(transaction.getId())))
+                .thenReturn(List.of(TransactionService.transactionToViewModel(transaction)));
+
+        TransactionPageViewModel result = transactionService.getUserTransactionsBefore(issuer.getId(), null, 1);
+
+        assertEquals(List.of(TransactionService.transactionToViewModel(transaction)), result.getTransactions());
+        TransactionCursor next = TransactionCursor.decode(result.getNext());
+        assertEquals(transaction.getDate(), next.getDate());
+        assertEquals(transaction.getId(), next.getId());
+    }
+
+    @Test
+    @DisplayName("getUserTransactionsBefore should seek from the cursor and end without cursor")
+    void getUserTransactionsBefore_shouldSeek_fromCursor() {
+        String cursor = new TransactionCursor(LOCAL_DATE_NOW.plusDays(1), 8).encode();
+        when(transactionRepository.findIdsByUserIdBefore(issuer.getId(), LOCAL_DATE_NOW.plusDays(1), 8, 4))
+                .thenReturn(List.of(transaction.getId()));
+        when(transactionRepository.findViewModelsByIdIn(List.of(transaction.getId())))
+                .thenReturn(List.of(TransactionService.transactionToViewModel(transaction)));
+
+        TransactionPageViewModel result = transactionService.getUserTransactionsBefore(issuer.getId(), cursor, 3);
+
+        assertEquals(1, result.getTransactions().size());
+        assertNull(result.getNext());
+    }
+
+    @Test
+    @DisplayName("getUserTransactionsBefore should reject an altered cursor")
+    void getUserTransactionsBefore_withInvalidCursor_shouldThrow_exception() {
+        assertThrows(InvalidCursorException.class,
+                     () -> transactionService.getUserTransactionsBefore(issuer.getId(), "not-a-cursor", 3));
+    }
+
+    @Test
+    @DisplayName("streamUserTransactions should read page by page, each sought from the last transaction read")
+    void streamUserTransactions_shouldSeek_eachPage() {
+        int                        size      = TransactionService.STREAMED_PAGE_SIZE;
+        List<Integer>              firstIds  = IntStream.rangeClosed(1, size).boxed().toList();
+        List<TransactionViewModel> firstPage = firstIds.stream()
+                .map(id -> new TransactionViewModel(id, null, null, LOCAL_DATE_NOW.minusMinutes(id), BigDecimal.ONE,
+                                                    "recent"))
+                .toList();
+        TransactionViewModel last  = firstPage.get(size - 1);
+        TransactionViewModel older = new TransactionViewModel(0, null, null, LOCAL_DATE_NOW.minusDays(1),
+                                                              BigDecimal.ONE, "older");
+        when(transactionRepository.findFirstIdsByUserId(issuer.getId(), size)).thenReturn(firstIds);
+        when(transactionRepository.findViewModelsByIdIn(firstIds)).thenReturn(firstPage);
+        when(transactionRepository.findIdsByUserIdBefore(issuer.getId(), last.getDate(), last.getId(), size))
+                .thenReturn(List.of(0));
+        when(transactionRepository.findViewModelsByIdIn(List.of(0))).thenReturn(List.of(older));
+
+        List<TransactionViewModel> streamed = transactionService.streamUserTransactions(issuer.getId()).toList();
+
+        assertEquals(size + 1, streamed.size());
+        assertEquals(0, streamed.get(size).getId());
+        // the second page is not full, so no third one is sought
+        verify(transactionRepository, times(1)).findIdsByUserIdBefore(anyInt(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("getMostRecentUserTransaction should read one transaction only")
+    void getMostRecentUserTransaction() {
+        TransactionViewModel transactionViewModel = TransactionService.transactionToViewModel(transaction);
+        when(transactionRepository.findFirstIdsByUserId(issuer.getId(), 1)).thenReturn(List.of(transaction.getId()));
+        when(transactionRepository.findViewModelsByIdIn(List.of(transaction.getId())))
+                .thenReturn(List.of(transactionViewModel));
+
+        assertEquals(Optional.of(transactionViewModel), transactionService.getMostRecentUserTransaction(issuer.getId()));
+    }
+
+    @Test
+    @DisplayName("getMostRecentUserTransaction should return empty optional when user has no transaction")
+    void getMostRecentUserTransaction_empty() {
+        when(transactionRepository.findFirstIdsByUserId(issuer.getId(), 1)).thenReturn(List.of());
+
+        assertTrue(transactionService.getMostRecentUserTransaction(issuer.getId()).isEmpty());
+    }
+
     @Test
     @DisplayName("transactionToViewModel should return correct value")
     void transactionToViewModel() {
@@ -210,9 +462,4 @@ class TransactionServiceTest {
         assertEquals(result.getAmount(), transaction.getAmount());
         assertTrue(result.getDescription().equalsIgnoreCase(transaction.getDescription()));
     }
-
-    // TODO unit test for "calculateAmountWithFee()"
-	@Test
-	void calculateAmountWithFee() {
-	}
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.PayMyBuddyApplication;
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares transfers reading users without lock and retrying conflicts with transfers locking both users first, under
+ * many small payments to one popular payee, one payer per thread. Not run by the tests, run it as MoneyBenchmark:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main TransferBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(TransferBenchmark.PAYERS)
+public class TransferBenchmark {
+    static final int PAYERS = 8;
+
+    /**
+     * Application started once per mode, with the popular payee and its payers.
+     */
+    @State(Scope.Benchmark)
+    public static class Application {
+        @Param({"UNLOCKED", "ORDERED_LOCKING"})
+        TransferExecutor.TransferMode mode;
+
+        ConfigurableApplicationContext context;
+        TransferExecutor               transferExecutor;
+        Integer                        payeeId;
+        List<Integer>                  payerIds;
+
+        private final AtomicInteger nextPayer = new AtomicInteger();
+
+        @Setup
+        public void start() {
+            context = new SpringApplicationBuilder(PayMyBuddyApplication.class).run("--server.port=0");
+            UserService userService = context.getBean(UserService.class);
+            ConnectionRepository connectionRepository = context.getBean(ConnectionRepository.class);
+            transferExecutor = new TransferExecutor(context.getBean(TransactionService.class), userService,
+                                                    context.getBean(PlatformTransactionManager.class),
+                                                    new SimpleMeterRegistry(), mode);
+
+            User payee = userService.createUser(newUser("popular.benchmark@mail.com"));
+            payeeId = payee.getId();
+            payerIds = new ArrayList<>();
+            for (int i = 0; i < PAYERS; i++) {
+                User payer = userService.createUser(newUser("payer" + i + ".benchmark@mail.com"));
+                userService.deposit(payer, "1000000");
+                connectionRepository.save(new Connection(null, payer, payee, LocalDateTime.now()));
+                payerIds.add(payer.getId());
+            }
+        }
+
+        @TearDown
+        public void stop() {
+            context.close();
+        }
+
+        Integer nextPayerId() {
+            return payerIds.get(nextPayer.getAndIncrement() % PAYERS);
+        }
+    }
+
+    /**
+     * Payer of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Payer {
+        Integer id;
+
+        @Setup
+        public void pick(Application application) {
+            id = application.nextPayerId();
+        }
+    }
+
+    @Benchmark
+    public Transaction transfer(Application application, Payer payer) {
+        return application.transferExecutor.transfer(payer.id, application.payeeId, "benchmark", Money.valueOf("1"));
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName("Firstname");
+        user.setLastName("Lastname");
+        user.setPassword("password");
+        return user;
+    }
+}
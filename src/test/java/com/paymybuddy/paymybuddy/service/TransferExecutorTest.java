@@ -0,0 +1,167 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@Import({TransferExecutor.class, SimpleMeterRegistry.class})
+class TransferExecutorTest {
+    /**
+     * Class under test.
+     */
+    @Autowired
+    TransferExecutor transferExecutor;
+
+    @MockBean
+    TransactionService transactionService;
+
+    @MockBean
+    UserService userService;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    private User issuer;
+    private User payee;
+
+    @BeforeEach
+    void setup() {
+        issuer = new User(1, "issuer@mail.com", "password", "Monica", "Geller", new BigDecimal("100.00"),
+                          new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        payee = new User(2, "payee@mail.com", "password", "Rachel", "Green", new BigDecimal("100.00"),
+                         new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        when(userService.getUserById(1)).thenReturn(Optional.of(issuer));
+        when(userService.getUserById(2)).thenReturn(Optional.of(payee));
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    @DisplayName("A transfer losing a deadlock should be retried on users read again")
+    void transfer_afterConflict_shouldRetry() {
+        Transaction transaction = new Transaction();
+        when(transactionService.createTransaction(issuer, payee, "retried", Money.valueOf("10")))
+                .thenThrow(new DeadlockLoserDataAccessException("Deadlock found when trying to get lock", null))
+                .thenThrow(new DeadlockLoserDataAccessException("Deadlock found when trying to get lock", null))
+                .thenReturn(transaction);
+
+        assertEquals(transaction, transferExecutor.transfer(1, 2, "retried", Money.valueOf("10")));
+        verify(transactionService, times(3)).createTransaction(issuer, payee, "retried", Money.valueOf("10"));
+        verify(userService, times(3)).getUserById(1);
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    @DisplayName("A transfer still conflicting after the last attempt should throw the conflict")
+    void transfer_alwaysConflicting_shouldThrow_exception() {
+        when(transactionService.createTransaction(issuer, payee, "conflicting", Money.valueOf("10")))
+                .thenThrow(new DeadlockLoserDataAccessException("Deadlock found when trying to get lock", null));
+
+        assertThrows(DeadlockLoserDataAccessException.class,
+                     () -> transferExecutor.transfer(1, 2, "conflicting", Money.valueOf("10")));
+        verify(transactionService, times(TransferExecutor.MAX_ATTEMPTS))
+                .createTransaction(issuer, payee, "conflicting", Money.valueOf("10"));
+    }
+
+    @Test
+    @DisplayName("A transfer failing for another reason should not be retried")
+    void transfer_withInsufficientBalance_shouldNotRetry() {
+        when(transactionService.createTransaction(issuer, payee, "too expensive", Money.valueOf("500")))
+                .thenThrow(new InsufficientBalanceException("Issuer has insufficient balance to make this transfer."));
+
+        assertThrows(InsufficientBalanceException.class, () -> transferExecutor.transfer(1, 2, "too expensive", Money.valueOf("500")));
+        verify(transactionService, times(1)).createTransaction(issuer, payee, "too expensive", Money.valueOf("500"));
+    }
+
+    @Test
+    @DisplayName("A transfer in ordered locking mode should use the users locked by id")
+    void transfer_withOrderedLocking_shouldUse_lockedUsers() {
+        TransferExecutor lockingExecutor = new TransferExecutor(transactionService, userService, transactionManager,
+                                                                new SimpleMeterRegistry(),
+                                                                TransferExecutor.TransferMode.ORDERED_LOCKING);
+        Transaction transaction = new Transaction();
+        when(userService.lockUsers(2, 1)).thenReturn(Map.of(1, issuer, 2, payee));
+        when(transactionService.createTransaction(payee, issuer, "locked", Money.valueOf("10"))).thenReturn(transaction);
+
+        assertEquals(transaction, lockingExecutor.transfer(2, 1, "locked", Money.valueOf("10")));
+        verify(userService, never()).getUserById(any());
+    }
+
+    @Test
+    @DisplayName("A group losing a deadlock should be written again as a whole")
+    void transferGroup_afterConflict_shouldRetry() {
+        List<GroupedTransfer> group = List.of(new GroupedTransfer(1, 2, "grouped", Money.valueOf("10")));
+        doThrow(new DeadlockLoserDataAccessException("Deadlock found when trying to get lock", null))
+                .doNothing()
+                .when(transactionService).createTransactionGroup(group, Map.of());
+
+        transferExecutor.transferGroup(group);
+
+        verify(transactionService, times(2)).createTransactionGroup(group, Map.of());
+        verify(transactionService, never()).createTransaction(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("A group failing as a whole should be run again one transfer at a time")
+    void transferGroup_failing_shouldRun_transfersOneByOne() {
+        Transaction transaction = new Transaction();
+        List<GroupedTransfer> group = List.of(new GroupedTransfer(1, 2, "paid", Money.valueOf("10")),
+                                              new GroupedTransfer(1, 2, "too expensive", Money.valueOf("500")));
+        doThrow(new InsufficientBalanceException("Balance withdrawn meanwhile."))
+                .when(transactionService).createTransactionGroup(group, Map.of());
+        when(transactionService.createTransaction(issuer, payee, "paid", Money.valueOf("10"))).thenReturn(transaction);
+        when(transactionService.createTransaction(issuer, payee, "too expensive", Money.valueOf("500")))
+                .thenThrow(new InsufficientBalanceException("Issuer has insufficient balance to make this transfer."));
+
+        transferExecutor.transferGroup(group);
+
+        assertEquals(transaction, group.get(0).getTransaction());
+        assertNull(group.get(0).getFailure());
+        assertNull(group.get(1).getTransaction());
+        assertInstanceOf(InsufficientBalanceException.class, group.get(1).getFailure());
+    }
+
+    @Test
+    @DisplayName("A group in ordered locking mode should lock all its issuers and payees before checking payments")
+    void transferGroup_withOrderedLocking_shouldLock_groupUsers() {
+        TransferExecutor lockingExecutor = new TransferExecutor(transactionService, userService, transactionManager,
+                                                                new SimpleMeterRegistry(),
+                                                                TransferExecutor.TransferMode.ORDERED_LOCKING);
+        List<GroupedTransfer> group = List.of(new GroupedTransfer(2, 1, "first", Money.valueOf("10")),
+                                              new GroupedTransfer(1, 2, "second", Money.valueOf("10")));
+        Map<Integer, User> locked = Map.of(1, issuer, 2, payee);
+        when(userService.lockUsers(2, 1)).thenReturn(locked);
+
+        lockingExecutor.transferGroup(group);
+
+        verify(userService, times(1)).lockUsers(2, 1);
+        verify(transactionService, times(1)).createTransactionGroup(group, locked);
+    }
+}
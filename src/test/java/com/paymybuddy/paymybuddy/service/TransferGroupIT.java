@@ -0,0 +1,162 @@
+package com.paymybuddy.paymybuddy.service;
+
+import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
+import com.paymybuddy.paymybuddy.model.Connection;
+import com.paymybuddy.paymybuddy.model.Money;
+import com.paymybuddy.paymybuddy.model.Transaction;
+import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.repository.ConnectionRepository;
+import com.paymybuddy.paymybuddy.repository.TransactionRepository;
+import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Queues payments of two issuers on a single lane with a long group window, so that they are committed together,
+ * one of them being refused, with users read without lock or locked in ascending id order.
+ */
+@SpringBootTest(properties = {"paymybuddy.transfer.lanes=1", "paymybuddy.transfer.group.max-wait-micros=200000"})
+class TransferGroupIT {
+    private static final int RICH_PAYMENTS = 20;
+
+    @Autowired
+    PartitionedTransferExecutor partitionedTransferExecutor;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @SpyBean
+    UserService userService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ConnectionRepository connectionRepository;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private User             rich;
+    private User             poor;
+    private User             payee;
+    private List<Connection> connections;
+
+    @BeforeEach
+    void init() {
+        rich = userService.createUser(newUser("rich.group@mail.com"));
+        poor = userService.createUser(newUser("poor.group@mail.com"));
+        payee = userService.createUser(newUser("payee.group@mail.com"));
+        userService.deposit(rich, "1000");
+        userService.deposit(poor, "5");
+        connections = List.of(connectionRepository.save(new Connection(null, rich, payee, LocalDateTime.now())),
+                              connectionRepository.save(new Connection(null, poor, payee, LocalDateTime.now())));
+    }
+
+    @AfterEach
+    void reset() {
+        transactionRepository.deleteAll(transactionRepository.findByPayee(payee));
+        connectionRepository.deleteAll(connections);
+        userRepository.deleteAllById(List.of(rich.getId(), poor.getId(), payee.getId()));
+    }
+
+    @Test
+    @DisplayName("Payments committed in one group should be saved, apart from the refused one")
+    void groupedPayments_shouldIsolate_refusedPayment() {
+        payAndCheck(partitionedTransferExecutor, meterRegistry.get("transfer.group.size").summary());
+
+        verify(userService, never()).lockUsers(any());
+    }
+
+    @Test
+    @DisplayName("Payments committed in one group in ordered locking mode should be saved after locking their users")
+    void groupedPayments_withOrderedLocking_shouldLock_users() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TransferExecutor lockingExecutor = new TransferExecutor(transactionService, userService, transactionManager,
+                                                                registry, TransferExecutor.TransferMode.ORDERED_LOCKING);
+        PartitionedTransferExecutor lockingLanes = new PartitionedTransferExecutor(lockingExecutor, registry, 1, 256,
+                                                                                   200_000);
+        try {
+            payAndCheck(lockingLanes, registry.get("transfer.group.size").summary());
+        } finally {
+            lockingLanes.shutdown();
+        }
+
+        ArgumentCaptor<Integer> locked = ArgumentCaptor.forClass(Integer.class);
+        verify(userService, atLeastOnce()).lockUsers(locked.capture());
+        assertThat(locked.getAllValues()).contains(rich.getId(), poor.getId(), payee.getId());
+    }
+
+    /**
+     * Queues the payments of both issuers on the lane, then checks each outcome and the balances.
+     */
+    private void payAndCheck(PartitionedTransferExecutor lanes, DistributionSummary groupSizes) {
+        long groupsBefore = groupSizes.count();
+
+        List<CompletableFuture<Transaction>> richPayments = new ArrayList<>();
+        for (int i = 0; i < RICH_PAYMENTS; i++) {
+            richPayments.add(lanes.transfer(rich.getId(), payee.getId(), "rich", Money.valueOf("10")));
+        }
+        CompletableFuture<Transaction> first   = lanes.transfer(poor.getId(), payee.getId(), "first", Money.valueOf("3"));
+        // 5 - 3.02 left, not enough for 3.02 more
+        CompletableFuture<Transaction> refused = lanes.transfer(poor.getId(), payee.getId(), "refused",
+                                                                Money.valueOf("3"));
+        CompletableFuture<Transaction> last    = lanes.transfer(poor.getId(), payee.getId(), "last", Money.valueOf("1"));
+
+        richPayments.forEach(CompletableFuture :: join);
+        first.join();
+        last.join();
+        CompletionException failure = assertThrows(CompletionException.class, refused :: join);
+        assertThat(failure.getCause()).isInstanceOf(InsufficientBalanceException.class);
+
+        // the first payment waited for the others in the window
+        assertThat(groupSizes.count() - groupsBefore).isLessThan(RICH_PAYMENTS + 3);
+        assertThat(balanceOf(rich.getId())).isEqualTo(new BigDecimal("799.00"));
+        assertThat(balanceOf(poor.getId())).isEqualTo(new BigDecimal("0.97"));
+        assertThat(balanceOf(payee.getId())).isEqualTo(new BigDecimal("204.00"));
+        assertThat(transactionRepository.findByPayee(payee)).hasSize(RICH_PAYMENTS + 2);
+    }
+
+    private BigDecimal balanceOf(Integer id) {
+        return userRepository.findById(id).orElseThrow().getBalance();
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFirstName("Firstname");
+        user.setLastName("Lastname");
+        user.setPassword("password");
+        return user;
+    }
+}
@@ -1,5 +1,6 @@
 package com.paymybuddy.paymybuddy.service;
 
+import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
 import com.paymybuddy.paymybuddy.model.User;
 import com.paymybuddy.paymybuddy.repository.UserRepository;
 import org.junit.jupiter.api.*;
@@ -11,6 +12,7 @@ import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.fail;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 @SpringBootTest
@@ -40,7 +42,8 @@ public class UserServiceIT {
 
     @AfterEach
     void reset() {
-        userService.deleteUser(user);
+        // balance changes increment the version, so the user is read again before being deleted
+        userService.getUserById(id).ifPresent(userService :: deleteUser);
     }
 
     @Test
@@ -59,11 +62,24 @@ public class UserServiceIT {
     @DisplayName("Withdraw should subtract money to user's balance")
     void withdraw() {
         String amount = "50";
+        userService.deposit(user, "80");
 
         userService.withdraw(user, amount);
 
         Optional<User> updatedUser = userService.getUserById(id);
         if (updatedUser.isEmpty()) fail("User was not found.");
-        assertThat(updatedUser.get().getBalance()).isEqualTo(new BigDecimal("-50.00"));
+        assertThat(updatedUser.get().getBalance()).isEqualTo(new BigDecimal("30.00"));
+    }
+
+    @Test
+    @DisplayName("Withdraw should not overdraw user's balance")
+    void withdraw_moreThanBalance() {
+        userService.deposit(user, "20");
+
+        assertThrows(InsufficientBalanceException.class, () -> userService.withdraw(user, "50"));
+
+        Optional<User> updatedUser = userService.getUserById(id);
+        if (updatedUser.isEmpty()) fail("User was not found.");
+        assertThat(updatedUser.get().getBalance()).isEqualTo(new BigDecimal("20.00"));
     }
 }
@@ -1,23 +1,38 @@
 package com.paymybuddy.paymybuddy.service;
 
+import com.paymybuddy.paymybuddy.constants.Pagination;
+import com.paymybuddy.paymybuddy.exceptions.BuddyNotFoundException;
 import com.paymybuddy.paymybuddy.exceptions.EmailAlreadyUsedException;
+import com.paymybuddy.paymybuddy.exceptions.InsufficientBalanceException;
 import com.paymybuddy.paymybuddy.model.User;
+import com.paymybuddy.paymybuddy.model.viewmodel.SignUpViewModel;
 import com.paymybuddy.paymybuddy.model.viewmodel.UserViewModel;
 import com.paymybuddy.paymybuddy.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -26,7 +41,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
-@Import(UserService.class)
+@Import({UserService.class, SimpleMeterRegistry.class})
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class UserServiceTest {
     /**
@@ -39,6 +54,11 @@ class UserServiceTest {
     UserRepository        userRepository;
     @MockBean
     BCryptPasswordEncoder passwordEncoder;
+    @MockBean
+    LedgerService         ledgerService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
 
     private User testUser;
     private User otherUser;
@@ -110,6 +130,15 @@ class UserServiceTest {
     }
 
 
+    @Test
+    @DisplayName("Signing up should save the email trimmed and in lower case")
+    void signUpToUser_shouldNormalize_email() {
+        SignUpViewModel signUp = new SignUpViewModel();
+        signUp.setEmail(" Ross.Geller@Friends.com ");
+
+        assertThat(UserService.signUpToUser(signUp).getEmail()).isEqualTo("ross.geller@friends.com");
+    }
+
     @Test
     @DisplayName("Saving a user with already existing email should throw exception")
     void createUser_shouldThrow_exception() {
@@ -124,8 +153,10 @@ class UserServiceTest {
     @DisplayName("Deposit should add amount to user's balance")
     void deposit_shouldAdd_amount() {
         String amount = "490.44";
+        when(userRepository.creditBalance(testUser.getId(), new BigDecimal("490.44"))).thenReturn(1);
         userService.deposit(testUser, amount);
-        verify(userRepository, times(1)).save(testUser);
+        verify(userRepository, times(1)).creditBalance(testUser.getId(), new BigDecimal("490.44"));
+        verify(ledgerService, times(1)).recordDeposit(testUser, new BigDecimal("490.44"));
         assertThat(testUser.getBalance()).isEqualTo(new BigDecimal("3000.00"));
     }
 
@@ -133,6 +164,7 @@ class UserServiceTest {
     @DisplayName("Deposit should replace any \"-\" in amount ")
     void deposit_shouldReplaceSign() {
         String amount = "-490.44";
+        when(userRepository.creditBalance(testUser.getId(), new BigDecimal("490.44"))).thenReturn(1);
         userService.deposit(testUser, amount);
         assertThat(testUser.getBalance()).isEqualTo(new BigDecimal("3000.00"));
     }
@@ -141,8 +173,10 @@ class UserServiceTest {
     @DisplayName("Withdrawal should withdraw money from user's account")
     void withdraw_shouldWithdraw_amount() {
         String amount = "509.56";
+        when(userRepository.debitBalance(testUser.getId(), new BigDecimal("509.56"))).thenReturn(1);
         userService.withdraw(testUser, amount);
-        verify(userRepository, times(1)).save(testUser);
+        verify(userRepository, times(1)).debitBalance(testUser.getId(), new BigDecimal("509.56"));
+        verify(ledgerService, times(1)).recordWithdrawal(testUser, new BigDecimal("509.56"));
         assertThat(testUser.getBalance()).isEqualTo("2000.00");
     }
 
@@ -150,17 +184,36 @@ class UserServiceTest {
     @DisplayName("Withdrawal should replace any \"-\" in amount ")
     void withdraw_shouldReplaceSign() {
         String amount = "-509.56";
+        when(userRepository.debitBalance(testUser.getId(), new BigDecimal("509.56"))).thenReturn(1);
         userService.withdraw(testUser, amount);
         assertThat(testUser.getBalance()).isEqualTo(new BigDecimal("2000.00"));
     }
 
     @Test
-    @DisplayName("getUsers should return a list of User with their email, first and last names, and balance " +
-                 "information")
-    void getUsers_shouldReturn_listOfUserViewModels() {
-        when(userRepository.findAll()).thenReturn(List.of(testUser, otherUser));
+    @DisplayName("Withdrawal should throw an exception when the balance does not cover the amount")
+    void withdraw_whenBalance_isInsufficient_shouldThrow_exception() {
+        when(userRepository.debitBalance(testUser.getId(), new BigDecimal("3000.00"))).thenReturn(0);
 
-        List<UserViewModel> result = userService.getUsers();
+        assertThrows(InsufficientBalanceException.class, () -> userService.withdraw(testUser, "3000"));
+        assertThat(testUser.getBalance()).isEqualTo(new BigDecimal("2509.56"));
+        verify(ledgerService, never()).recordWithdrawal(any(User.class), any(BigDecimal.class));
+    }
+
+    @Test
+    @DisplayName("Deposit should throw an exception when the user does not exist")
+    void deposit_whenUser_doesNotExist_shouldThrow_exception() {
+        when(userRepository.creditBalance(testUser.getId(), new BigDecimal("10.00"))).thenReturn(0);
+
+        assertThrows(BuddyNotFoundException.class, () -> userService.deposit(testUser, "10"));
+    }
+
+    @Test
+    @DisplayName("streamUsers should stream the users after the given id, no more than the maximum page size")
+    void streamUsers_shouldReturn_usersAfterId() {
+        when(userRepository.streamViewModelsAfter(5, PageRequest.of(0, Pagination.MAX_STREAMED_SIZE)))
+                .thenReturn(Stream.of(UserService.userToViewModel(testUser), UserService.userToViewModel(otherUser)));
+
+        List<UserViewModel> result = userService.streamUsers(5, Integer.MAX_VALUE).toList();
 
         assertTrue(result.contains(UserService.userToViewModel(testUser)));
         assertTrue(result.contains(UserService.userToViewModel(otherUser)));
@@ -176,4 +229,52 @@ class UserServiceTest {
         assertThat(result.getFirstname()).isEqualTo(testUser.getFirstName());
         assertThat(result.getLastname()).isEqualTo(testUser.getLastName());
     }
+
+    @Test
+    @DisplayName("getAuthenticatedUser should read the user from database once per request")
+    void getAuthenticatedUser_shouldLookup_userOncePerRequest() {
+        double lookupsBefore = meterRegistry.get("user.lookups").counter().count();
+        when(userRepository.findByEmail(testUser.getEmail())).thenReturn(Optional.of(testUser));
+        SecurityContextHolder.getContext()
+                             .setAuthentication(new TestingAuthenticationToken(testUser.getEmail(), null));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            assertThat(userService.getAuthenticatedUser()).isEqualTo(testUser);
+            assertThat(userService.getAuthenticatedUser()).isEqualTo(testUser);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            SecurityContextHolder.clearContext();
+        }
+
+        verify(userRepository, times(1)).findByEmail(testUser.getEmail());
+        assertThat(meterRegistry.get("user.lookups").counter().count() - lookupsBefore).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("getAuthenticatedUser should throw an exception when the principal matches no user")
+    void getAuthenticatedUser_whenUnknown_shouldThrow_exception() {
+        when(userRepository.findByEmail(testUser.getEmail())).thenReturn(Optional.empty());
+        SecurityContextHolder.getContext()
+                             .setAuthentication(new TestingAuthenticationToken(testUser.getEmail(), null));
+        try {
+            assertThrows(BuddyNotFoundException.class, () -> userService.getAuthenticatedUser());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    @DisplayName("lockUsers should lock users in ascending id order, whatever the order of the ids given")
+    void lockUsers_shouldLock_usersInAscendingIdOrder() {
+        when(userRepository.findForUpdateById(1)).thenReturn(Optional.of(testUser));
+        when(userRepository.findForUpdateById(2)).thenReturn(Optional.of(otherUser));
+
+        Map<Integer, User> users = userService.lockUsers(2, 1);
+
+        InOrder inOrder = inOrder(userRepository);
+        inOrder.verify(userRepository).findForUpdateById(1);
+        inOrder.verify(userRepository).findForUpdateById(2);
+        assertThat(users.get(1)).isEqualTo(testUser);
+        assertThat(users.get(2)).isEqualTo(otherUser);
+    }
 }